@@ -0,0 +1,86 @@
+package org.skypay.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.model.Account;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Single-threaded cost of one deposit or withdrawal on Account, including the rejected-withdrawal path
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountBenchmark {
+
+    // The history grows with every applied transaction, so the account is replaced this often to bound the heap
+    private static final int RESET_EVERY = 1 << 20;
+    private static final LocalDate DATE = LocalDate.of(2012, 1, 10);
+
+    private Account account;
+    private Account emptyAccount;
+    private int operations;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        reset();
+        emptyAccount = new Account();
+    }
+
+    @Benchmark
+    public int deposit() {
+        account.deposite(100, DATE);
+        return recycle();
+    }
+
+    // Same as deposit(), plus reading the system clock for the transaction date
+    @Benchmark
+    public int depositAtCurrentDate() {
+        account.deposite(100);
+        return recycle();
+    }
+
+    @Benchmark
+    public int withdraw() {
+        account.withdraw(1, DATE);
+        return recycle();
+    }
+
+    @Benchmark
+    public Object withdrawInsufficientBalance() {
+        try {
+            emptyAccount.withdraw(100, DATE);
+            return null;
+        } catch (InsufficientBalanceException e) {
+            return e;
+        }
+    }
+
+    private int recycle() {
+        int balance = account.getBalance();
+        if (++operations == RESET_EVERY) {
+            reset();
+        }
+        return balance;
+    }
+
+    private void reset() {
+        account = new Account();
+        // Enough funds for RESET_EVERY withdrawals of 1
+        account.deposite(RESET_EVERY, DATE);
+        operations = 0;
+    }
+}
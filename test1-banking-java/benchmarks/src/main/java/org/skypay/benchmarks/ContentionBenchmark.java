@@ -0,0 +1,87 @@
+package org.skypay.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skypay.model.ConcurrentAccount;
+import org.skypay.service.AccountRegistry;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput under multi-threaded load: one hot account, accounts spread over the registry,
+// and writers racing readers on the same account
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Contended histories are not reset within an iteration, so give them room
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    private static final LocalDate DATE = LocalDate.of(2012, 1, 10);
+
+    // Number of distinct accounts the threads spread over: 1 is a single hot account
+    @Param({"1", "64", "4096"})
+    public int accounts;
+
+    private AccountRegistry registry;
+    private ConcurrentAccount hotAccount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        registry = new AccountRegistry();
+        for (long id = 0; id < accounts; id++) {
+            registry.getOrCreate(id);
+        }
+        hotAccount = registry.get(0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositHotAccount() {
+        hotAccount.deposite(100, DATE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositRandomAccount() {
+        long id = ThreadLocalRandom.current().nextInt(accounts);
+        registry.get(id).deposite(100, DATE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int lookupRandomAccount() {
+        long id = ThreadLocalRandom.current().nextInt(accounts);
+        return registry.get(id).getBalance();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public void writer() {
+        hotAccount.deposite(100, DATE);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(2)
+    public int reader() {
+        return hotAccount.getBalance();
+    }
+}
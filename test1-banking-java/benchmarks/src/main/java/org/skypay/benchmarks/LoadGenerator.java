@@ -0,0 +1,385 @@
+package org.skypay.benchmarks;
+
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.model.ConcurrentAccount;
+import org.skypay.service.AccountRegistry;
+import org.skypay.service.LatencyHistogram;
+import org.skypay.service.StreamingStatementPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Repeatable load driver: worker threads issue a deposit / withdraw / statement mix against the accounts
+// of an AccountRegistry, with account choice following a Zipf distribution so a few hot accounts take most
+// of the traffic. Each concurrency level in --threads is run in turn and reported with its throughput and
+// latency percentiles, which shows where throughput stops scaling and latency starts climbing.
+//
+//   java -cp benchmarks/target/benchmarks.jar org.skypay.benchmarks.LoadGenerator --threads=1,2,4,8 --skew=1.1
+//
+// Without --rate every worker runs closed-loop, as fast as it can. With --rate the workers together aim
+// at that many operations per second, and latency is measured from when each operation was due rather
+// than when it was sent, so a stalled service is not hidden by workers that stop sending (coordinated omission).
+public class LoadGenerator {
+
+    private static final String USAGE = "Options: --threads=1,2,4,8 --accounts=10000 --skew=0.99 --mix=70/25/5"
+        + " --duration=10 --warmup=3 --rate=0 --max-amount=100 --statement-rows=50 --initial-balance=1000000 --seed=42";
+
+    private static final int DEPOSIT = 0;
+    private static final int WITHDRAW = 1;
+    private static final int STATEMENT = 2;
+    private static final String[] OPERATION_NAMES = {"deposit", "withdraw", "statement"};
+    // parkNanos can oversleep by tens of microseconds, which would count as latency; the last stretch is spun
+    private static final long SPIN_NANOS = 100_000;
+
+    private final Config config;
+    private final ZipfSampler sampler;
+    private AccountRegistry registry;
+
+    public LoadGenerator(Config config) {
+        this.config = config;
+        this.sampler = new ZipfSampler(config.accounts, config.skew);
+    }
+
+    // Fresh accounts holding only their initial deposit, so every concurrency level starts from the same
+    // history sizes; otherwise statements would get slower with each level for reasons unrelated to it.
+    // Must be called before the first run.
+    public void reset() {
+        registry = new AccountRegistry();
+        for (int id = 0; id < config.accounts; id++) {
+            registry.getOrCreate(id).deposite(config.initialBalance);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Config config = Config.parse(args);
+        LoadGenerator generator = new LoadGenerator(config);
+
+        System.out.println(config);
+        List<Result> results = new ArrayList<>();
+        for (int threads : config.threads) {
+            generator.reset();
+            generator.run(threads, config.warmupSeconds);
+            Result result = generator.run(threads, config.durationSeconds);
+            System.out.println(result);
+            results.add(result);
+        }
+
+        System.out.println();
+        System.out.println("threads      ops/s   p50 us   p99 us p99.9 us   max us");
+        for (Result result : results) {
+            System.out.println(result.summaryLine());
+        }
+    }
+
+    // Fails with the first unexpected error a worker hit, after every worker has stopped
+    public Result run(int threads, double seconds) throws InterruptedException {
+        if (registry == null) {
+            throw new IllegalStateException("Call reset() before running a level");
+        }
+
+        Stats stats = new Stats();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        long durationNanos = (long) (seconds * 1e9);
+        long[] startNanos = new long[1];
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            // Seeded per thread index, so a given configuration replays the same operation sequences
+            SplittableRandom random = new SplittableRandom(config.seed * 31 + t);
+            // Open-loop pacing: each thread sends its share of the target rate
+            long intervalNanos = config.rate > 0 ? Math.max(1, (long) (1e9 * threads / config.rate)) : 0;
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    work(random, stats, startNanos[0], startNanos[0] + durationNanos, intervalNanos);
+                } catch (RuntimeException | Error e) {
+                    stats.failure.compareAndSet(null, e);
+                }
+            }, "load-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        ready.await();
+        startNanos[0] = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (stats.failure.get() != null) {
+            throw new IllegalStateException("Load worker failed at " + threads + " threads", stats.failure.get());
+        }
+        return new Result(threads, System.nanoTime() - startNanos[0], stats);
+    }
+
+    private void work(SplittableRandom random, Stats stats, long start, long deadline, long intervalNanos) {
+        StreamingStatementPrinter printer = new StreamingStatementPrinter();
+        OutputStream discard = OutputStream.nullOutputStream();
+        long due = start;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (intervalNanos > 0) {
+                if (due >= deadline) {
+                    return;
+                }
+                while (now < due) {
+                    if (due - now > SPIN_NANOS) {
+                        LockSupport.parkNanos(due - now - SPIN_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    now = System.nanoTime();
+                }
+            } else {
+                if (now >= deadline) {
+                    return;
+                }
+                due = now;
+            }
+
+            // Looked up per operation, as a request handler would
+            ConcurrentAccount account = registry.get(sampler.sample(random));
+            int operation = pickOperation(random);
+            int amount = 1 + random.nextInt(config.maxAmount);
+
+            try {
+                if (operation == DEPOSIT) {
+                    account.deposite(amount);
+                } else if (operation == WITHDRAW) {
+                    account.withdraw(amount);
+                } else {
+                    // Only the most recent rows are copied, as a statement page would show, so the cost
+                    // does not grow with the history the run has built up
+                    printer.print(account.getRecentTransactions(config.statementRows), discard);
+                }
+            } catch (InsufficientBalanceException e) {
+                stats.rejections[operation].increment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            long latency = System.nanoTime() - due;
+            stats.latencies[operation].record(latency);
+            stats.all.record(latency);
+            due += intervalNanos;
+        }
+    }
+
+    private int pickOperation(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < config.depositPercent) {
+            return DEPOSIT;
+        }
+        return roll < config.depositPercent + config.withdrawPercent ? WITHDRAW : STATEMENT;
+    }
+
+    // Account index with probability proportional to 1 / (rank + 1)^skew; skew 0 is uniform
+    static final class ZipfSampler {
+
+        private final double[] cumulative;
+        private final int size;
+
+        ZipfSampler(int size, double skew) {
+            this.size = size;
+            if (skew == 0) {
+                this.cumulative = null;
+                return;
+            }
+
+            this.cumulative = new double[size];
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            if (cumulative == null) {
+                return random.nextInt(size);
+            }
+
+            double u = random.nextDouble();
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < u) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class Stats {
+
+        final LatencyHistogram[] latencies = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+        final LongAdder[] rejections = {new LongAdder(), new LongAdder(), new LongAdder()};
+        final LatencyHistogram all = new LatencyHistogram();
+        // First unexpected error of any worker; rejections are expected and only counted
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+    }
+
+    public static final class Result {
+
+        private final int threads;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot[] latencies;
+        private final long[] rejections;
+        private final LatencyHistogram.Snapshot all;
+
+        Result(int threads, long elapsedNanos, Stats stats) {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = new LatencyHistogram.Snapshot[OPERATION_NAMES.length];
+            this.rejections = new long[OPERATION_NAMES.length];
+            for (int i = 0; i < OPERATION_NAMES.length; i++) {
+                latencies[i] = stats.latencies[i].snapshot();
+                rejections[i] = stats.rejections[i].sum();
+            }
+            this.all = stats.all.snapshot();
+        }
+
+        public long getOperations() {
+            return all.getCount();
+        }
+
+        public double getThroughput() {
+            return getOperations() / (elapsedNanos / 1e9);
+        }
+
+        // Latency of every operation type together
+        public LatencyHistogram.Snapshot getLatency() {
+            return all;
+        }
+
+        String summaryLine() {
+            return String.format("%7d %10.0f %8.1f %8.1f %8.1f %8.1f", threads, getThroughput(),
+                all.valueAtPercentile(50) / 1e3, all.valueAtPercentile(99) / 1e3, all.valueAtPercentile(99.9) / 1e3,
+                all.getMax() / 1e3);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%d threads: %d operations in %.2f s, %.0f ops/s%n",
+                threads, getOperations(), elapsedNanos / 1e9, getThroughput()));
+            for (int i = 0; i < OPERATION_NAMES.length; i++) {
+                LatencyHistogram.Snapshot snapshot = latencies[i];
+                out.append(String.format("  %-9s %10d ops  p50 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us  rejected %d%n",
+                    OPERATION_NAMES[i], snapshot.getCount(), snapshot.valueAtPercentile(50) / 1e3,
+                    snapshot.valueAtPercentile(99) / 1e3, snapshot.valueAtPercentile(99.9) / 1e3,
+                    snapshot.getMax() / 1e3, rejections[i]));
+            }
+            return out.toString();
+        }
+    }
+
+    public static final class Config {
+
+        int[] threads = {1, 2, 4, 8};
+        int accounts = 10_000;
+        double skew = 0.99;
+        int depositPercent = 70;
+        int withdrawPercent = 25;
+        double durationSeconds = 10;
+        double warmupSeconds = 3;
+        double rate = 0;
+        int maxAmount = 100;
+        int statementRows = 50;
+        int initialBalance = 1_000_000;
+        long seed = 42;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (!arg.startsWith("--") || equals < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, received: " + arg + "\n" + USAGE);
+                }
+
+                String name = arg.substring(2, equals);
+                String value = arg.substring(equals + 1);
+                switch (name) {
+                    case "threads" -> config.threads = parseThreads(value);
+                    case "accounts" -> config.accounts = positive(name, Integer.parseInt(value));
+                    case "skew" -> config.skew = Double.parseDouble(value);
+                    case "mix" -> config.parseMix(value);
+                    case "duration" -> config.durationSeconds = Double.parseDouble(value);
+                    case "warmup" -> config.warmupSeconds = Double.parseDouble(value);
+                    case "rate" -> config.rate = Double.parseDouble(value);
+                    case "max-amount" -> config.maxAmount = positive(name, Integer.parseInt(value));
+                    case "statement-rows" -> config.statementRows = positive(name, Integer.parseInt(value));
+                    case "initial-balance" -> config.initialBalance = positive(name, Integer.parseInt(value));
+                    case "seed" -> config.seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option --" + name + "\n" + USAGE);
+                }
+            }
+            if (config.skew < 0) {
+                throw new IllegalArgumentException("Skew must not be negative, received: " + config.skew);
+            }
+            return config;
+        }
+
+        // deposit/withdraw/statement percentages, e.g. 70/25/5
+        private void parseMix(String value) {
+            String[] parts = value.split("/");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Mix must be deposit/withdraw/statement percentages, received: " + value);
+            }
+            int deposit = Integer.parseInt(parts[0]);
+            int withdraw = Integer.parseInt(parts[1]);
+            int statement = Integer.parseInt(parts[2]);
+            if (deposit < 0 || withdraw < 0 || statement < 0 || deposit + withdraw + statement != 100) {
+                throw new IllegalArgumentException("Mix percentages must be non-negative and add up to 100, received: " + value);
+            }
+            depositPercent = deposit;
+            withdrawPercent = withdraw;
+        }
+
+        private static int[] parseThreads(String value) {
+            String[] parts = value.split(",");
+            int[] threads = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                threads[i] = positive("threads", Integer.parseInt(parts[i].trim()));
+            }
+            return threads;
+        }
+
+        private static int positive(String name, int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive, received: " + value);
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("accounts=%d skew=%.2f mix=%d/%d/%d duration=%.1fs warmup=%.1fs rate=%s seed=%d",
+                accounts, skew, depositPercent, withdrawPercent, 100 - depositPercent - withdrawPercent,
+                durationSeconds, warmupSeconds, rate > 0 ? String.format("%.0f ops/s", rate) : "closed-loop", seed);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.skypay.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skypay.model.Transaction;
+import org.skypay.model.TransactionLog;
+import org.skypay.service.StatementPrinter;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Original String.format rendering of materialized Transaction objects, the baseline for
+// StatementPrinterBenchmark. It never reads a TransactionLog, so it runs once per history size.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatementPrinterBaselineBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int rows;
+
+    private List<Transaction> transactions;
+    private StatementPrinter printer;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TransactionLog log = new TransactionLog(rows);
+        StatementPrinterBenchmark.fill(log, rows);
+        transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(log.get(i));
+        }
+
+        printer = new StatementPrinter();
+
+        // StatementPrinter writes to System.out, which would otherwise flood the console
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void printTransactionList() {
+        printer.print(transactions);
+    }
+}
@@ -0,0 +1,96 @@
+package org.skypay.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skypay.model.TransactionLog;
+import org.skypay.service.StatementPrinter;
+import org.skypay.service.StreamingStatementPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Full statement rendering over histories of increasing size; output goes to a discarding stream.
+// The original String.format rendering does not depend on storage, so it has its own class without that
+// parameter: StatementPrinterBaselineBenchmark.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatementPrinterBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int rows;
+
+    // Where the log keeps its rows: Java arrays, or direct buffers outside the heap
+    @Param({"heap", "offHeap"})
+    public String storage;
+
+    private TransactionLog log;
+    private StatementPrinter printer;
+    private StreamingStatementPrinter streamingPrinter;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (storage.equals("offHeap")) {
+            log = TransactionLog.offHeap();
+            log.ensureCapacity(rows);
+        } else {
+            log = new TransactionLog(rows);
+        }
+        fill(log, rows);
+
+        printer = new StatementPrinter();
+        streamingPrinter = new StreamingStatementPrinter();
+
+        // StatementPrinter writes to System.out, which would otherwise flood the console
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    // Current path: Account.printStatement() goes through here
+    @Benchmark
+    public void printLog() {
+        printer.print(log);
+    }
+
+    // Reusing one printer and its buffer instead of a new one per statement
+    @Benchmark
+    public void printLogWithReusedPrinter() throws IOException {
+        streamingPrinter.print(log, OutputStream.nullOutputStream());
+    }
+
+    // Mostly deposits with a withdrawal every fourth row, a few rows per day; shared with the baseline
+    static void fill(TransactionLog log, int rows) {
+        int epochDay = 15_000;
+        int balance = 0;
+        for (int i = 0; i < rows; i++) {
+            int amount = (i & 3) == 3 ? -250 : 100 + i % 900;
+            balance += amount;
+            if (i % 5 == 0) {
+                epochDay++;
+            }
+            log.append(epochDay, amount, balance);
+        }
+    }
+}
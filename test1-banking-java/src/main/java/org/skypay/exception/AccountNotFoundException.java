@@ -0,0 +1,8 @@
+package org.skypay.exception;
+
+public class AccountNotFoundException extends RuntimeException {
+    
+    public AccountNotFoundException(String message) {
+        super(message);
+    }
+}
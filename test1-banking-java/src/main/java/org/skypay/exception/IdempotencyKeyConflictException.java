@@ -0,0 +1,8 @@
+package org.skypay.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
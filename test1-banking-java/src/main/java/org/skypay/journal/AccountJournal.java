@@ -0,0 +1,42 @@
+package org.skypay.journal;
+
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+
+// Durable record of one account's transactions. Account records each transaction before applying it
+// and commits before acknowledging, so a caller never sees a transaction that could be lost on restart.
+public interface AccountJournal {
+    
+    // Journal used by accounts that live in memory only
+    AccountJournal NONE = new AccountJournal() {
+        @Override
+        public void record(int epochDay, int amount, int balance) {
+        }
+        
+        @Override
+        public void commit() {
+        }
+        
+        @Override
+        public void abort() {
+        }
+    };
+    
+    void record(int epochDay, int amount, int balance);
+    
+    // Blocks until everything recorded so far is durable
+    void commit();
+    
+    // Discards everything recorded since the last commit, so a later commit cannot publish it
+    void abort();
+    
+    // History archived before the journal was opened, so older than anything the account was rebuilt from,
+    // handed to reader one segment at a time, oldest first. Journals that never archive have none.
+    default void readArchive(ArchiveReader reader) throws IOException {
+    }
+    
+    interface ArchiveReader {
+        void onSegment(TransactionLog segment) throws IOException;
+    }
+}
@@ -0,0 +1,250 @@
+package org.skypay.journal;
+
+import org.skypay.model.TransactionLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-account journal of fixed-width records (epoch day, amount, balance) in a memory-mapped file.
+// Appends are plain stores into the mapping; commit() publishes them by bumping the record count in
+// the header, so anything past that count after a crash is simply ignored on the next open.
+public class MappedAccountJournal implements AccountJournal, Closeable {
+
+    static final int MAGIC = 0x534B4D4A; // "SKMJ"
+    static final int VERSION = 1;
+    // magic, version, committed record count
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 12;
+    private static final int COUNT_OFFSET = 8;
+
+    // Records are mapped in regions of this many rows; the last region starts small and doubles
+    private static final int RECORDS_PER_REGION = 1 << 22;
+    private static final int INITIAL_REGION_RECORDS = 1 << 12;
+    // Rows decoded per bulk read during load
+    private static final int LOAD_CHUNK_RECORDS = 1 << 14;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final boolean forceOnCommit;
+    private final Forcer forcer;
+    private long committedCount;
+    private long recordedCount;
+    // First failed commit. The header may already have reached the disk with the new count, so the journal
+    // puts the old count back and refuses all further work rather than publish records the caller saw fail.
+    private IOException failure;
+
+    private MappedAccountJournal(FileChannel channel, MappedByteBuffer header, long committedCount, boolean forceOnCommit,
+                                 Forcer forcer) {
+        this.channel = channel;
+        this.header = header;
+        this.committedCount = committedCount;
+        this.recordedCount = committedCount;
+        this.forceOnCommit = forceOnCommit;
+        this.forcer = forcer;
+    }
+
+    // Without forceOnCommit, commits survive a process crash but may be lost if the machine goes down
+    public static MappedAccountJournal open(Path path, boolean forceOnCommit) throws IOException {
+        return open(path, forceOnCommit, MappedByteBuffer::force);
+    }
+
+    static MappedAccountJournal open(Path path, boolean forceOnCommit, Forcer forcer) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (created) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putLong(COUNT_OFFSET, 0);
+                header.force();
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not an account journal, or an unsupported version: " + path);
+            }
+
+            long committed = header.getLong(COUNT_OFFSET);
+            if (committed < 0 || channel.size() < HEADER_SIZE + committed * RECORD_SIZE) {
+                throw new IOException("Account journal is shorter than its committed record count: " + path);
+            }
+            return new MappedAccountJournal(channel, header, committed, forceOnCommit, forcer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getCommittedCount() {
+        return committedCount;
+    }
+
+    // Bulk-loads every committed record, checking that each balance follows from the previous one
+    public TransactionLog load() throws IOException {
+        return load(0);
+    }
+
+    // Same as load(), for a journal whose first record follows an earlier balance (see SegmentedAccountJournal)
+    public TransactionLog load(int openingBalance) throws IOException {
+        if (committedCount > Integer.MAX_VALUE) {
+            throw new IOException("Journal holds more records than fit in memory: " + committedCount);
+        }
+
+        int count = (int) committedCount;
+        TransactionLog history = new TransactionLog(count);
+        int[] chunk = new int[LOAD_CHUNK_RECORDS * 3];
+        int previousBalance = openingBalance;
+
+        for (int regionStart = 0; regionStart < count; regionStart += RECORDS_PER_REGION) {
+            int regionRows = Math.min(RECORDS_PER_REGION, count - regionStart);
+            IntBuffer ints = channel
+                .map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long) regionStart * RECORD_SIZE, (long) regionRows * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+
+            for (int chunkStart = 0; chunkStart < regionRows; chunkStart += LOAD_CHUNK_RECORDS) {
+                int rows = Math.min(LOAD_CHUNK_RECORDS, regionRows - chunkStart);
+                ints.get(chunk, 0, rows * 3);
+
+                for (int row = 0; row < rows; row++) {
+                    int epochDay = chunk[row * 3];
+                    int amount = chunk[row * 3 + 1];
+                    int balance = chunk[row * 3 + 2];
+                    if (balance != previousBalance + amount) {
+                        throw new IOException("Account journal is corrupt at record " + (regionStart + chunkStart + row)
+                            + ": balance " + balance + " does not follow " + previousBalance + " + " + amount);
+                    }
+                    history.append(epochDay, amount, balance);
+                    previousBalance = balance;
+                }
+            }
+        }
+
+        return history;
+    }
+
+    @Override
+    public void record(int epochDay, int amount, int balance) {
+        checkNotFailed();
+        long index = recordedCount;
+        int region = (int) (index / RECORDS_PER_REGION);
+        int slot = (int) (index % RECORDS_PER_REGION);
+
+        MappedByteBuffer mapping;
+        try {
+            mapping = regionFor(region, slot);
+        } catch (UncheckedIOException e) {
+            // Nothing is on disk yet, so dropping what this commit had recorded is enough
+            recordedCount = committedCount;
+            throw e;
+        }
+        int offset = slot * RECORD_SIZE;
+        mapping.putInt(offset, epochDay).putInt(offset + 4, amount).putInt(offset + 8, balance);
+        recordedCount++;
+    }
+
+    @Override
+    public void commit() {
+        checkNotFailed();
+        if (recordedCount == committedCount) {
+            return;
+        }
+
+        try {
+            if (forceOnCommit) {
+                // Records must be durable before the count that makes them visible
+                for (int region = regionOf(committedCount); region < regions.size(); region++) {
+                    forcer.force(regions.get(region));
+                }
+            }
+            header.putLong(COUNT_OFFSET, recordedCount);
+            if (forceOnCommit) {
+                forcer.force(header);
+            }
+        } catch (UncheckedIOException e) {
+            fail(e.getCause());
+            throw e;
+        }
+        committedCount = recordedCount;
+    }
+
+    @Override
+    public void abort() {
+        recordedCount = committedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (failure != null) {
+            channel.close();
+            return;
+        }
+        commit();
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+        channel.close();
+    }
+
+    // Also puts the committed count back in the header, so a reopen does not load the failed records
+    private void fail(IOException cause) {
+        failure = cause;
+        recordedCount = committedCount;
+        header.putLong(COUNT_OFFSET, committedCount);
+        try {
+            forcer.force(header);
+        } catch (UncheckedIOException e) {
+            cause.addSuppressed(e.getCause());
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new UncheckedIOException("Account journal failed to commit earlier and accepts no more records", failure);
+        }
+    }
+
+    private MappedByteBuffer regionFor(int region, int slot) {
+        try {
+            while (regions.size() <= region) {
+                regions.add(map(regions.size(), INITIAL_REGION_RECORDS));
+            }
+
+            MappedByteBuffer mapping = regions.get(region);
+            // Remap the tail region with room for twice as many rows; full regions are never remapped
+            while (slot * RECORD_SIZE >= mapping.capacity()) {
+                int records = Math.min(RECORDS_PER_REGION, mapping.capacity() / RECORD_SIZE * 2);
+                mapping = map(region, records);
+                regions.set(region, mapping);
+            }
+            return mapping;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer map(int region, int records) throws IOException {
+        long position = HEADER_SIZE + (long) region * RECORDS_PER_REGION * RECORD_SIZE;
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) records * RECORD_SIZE);
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        return mapping;
+    }
+
+    private static int regionOf(long index) {
+        return (int) (index / RECORDS_PER_REGION);
+    }
+
+    // Forces a mapping to disk, throwing UncheckedIOException on failure; tests substitute one that fails
+    interface Forcer {
+        void force(MappedByteBuffer mapping);
+    }
+}
@@ -0,0 +1,339 @@
+package org.skypay.journal;
+
+import org.skypay.model.TransactionLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Account journal kept in a directory: an active MappedAccountJournal for recent records, archived
+// segments holding everything older, and a snapshot of the balance at the end of the archive.
+// Once the active journal reaches the compaction threshold it is sealed into an archived segment and
+// the snapshot moves forward, so a restart only validates and loads the records since the last snapshot.
+public class SegmentedAccountJournal implements AccountJournal, Closeable {
+
+    static final String ACTIVE_FILE = "active.journal";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x534B534E; // "SKSN"
+    private static final int SNAPSHOT_VERSION = 1;
+    // magic, version, archived record count, balance after the last archived record, CRC32C
+    private static final int SNAPSHOT_SIZE = 24;
+
+    private final Path directory;
+    private final int compactionThreshold;
+    private final boolean forceOnCommit;
+    private final ActiveOpener opener;
+
+    // Null while a compaction that closed it has not managed to reopen it; see active()
+    private MappedAccountJournal active;
+    private long archivedCount;
+    // Records archived when the journal was opened. Later segments hold records the account also has in memory.
+    private final long openedArchivedCount;
+    private int snapshotBalance;
+    private int recordedBalance;
+    private final TransactionLog recoveredTail;
+    private IOException compactionFailure;
+
+    private SegmentedAccountJournal(Path directory, int compactionThreshold, boolean forceOnCommit, ActiveOpener opener)
+            throws IOException {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        this.forceOnCommit = forceOnCommit;
+        this.opener = opener;
+
+        readSnapshot();
+        adoptUnsnapshottedSegments();
+        this.openedArchivedCount = archivedCount;
+
+        this.active = opener.open(directory.resolve(ACTIVE_FILE), forceOnCommit);
+        this.recoveredTail = active.load(snapshotBalance);
+        this.recordedBalance = recoveredTail.isEmpty() ? snapshotBalance : recoveredTail.balanceAt(recoveredTail.size() - 1);
+    }
+
+    public static SegmentedAccountJournal open(Path directory, int compactionThreshold, boolean forceOnCommit) throws IOException {
+        return open(directory, compactionThreshold, forceOnCommit, MappedAccountJournal::open);
+    }
+
+    static SegmentedAccountJournal open(Path directory, int compactionThreshold, boolean forceOnCommit, ActiveOpener opener)
+            throws IOException {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive, received: " + compactionThreshold);
+        }
+
+        Files.createDirectories(directory);
+        return new SegmentedAccountJournal(directory, compactionThreshold, forceOnCommit, opener);
+    }
+
+    // Balance at the end of the archive: the opening balance of the tail
+    public int getSnapshotBalance() {
+        return snapshotBalance;
+    }
+
+    public long getArchivedCount() {
+        return archivedCount;
+    }
+
+    // Error of the last compaction started by commit(), or null once one succeeds. Records are never lost:
+    // either they stay in the active journal and the next commit tries again, or they were sealed but the
+    // new active journal could not be opened, and record() and commit() refuse work until reopening it succeeds.
+    public IOException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    // Records since the last snapshot, as loaded when the journal was opened
+    public TransactionLog getRecoveredTail() {
+        return recoveredTail;
+    }
+
+    // Reads the history older than the recovered tail back into memory at once; see readArchive()
+    public TransactionLog loadArchive() throws IOException {
+        TransactionLog archive = new TransactionLog();
+        readArchive(records -> {
+            for (int i = 0; i < records.size(); i++) {
+                archive.append(records.epochDayAt(i), records.amountAt(i), records.balanceAt(i));
+            }
+        });
+        return archive;
+    }
+
+    // Segments sealed before this journal was opened, one at a time, so memory is bounded by the compaction
+    // threshold. Segments sealed since then hold records that are still in the account.
+    @Override
+    public void readArchive(ArchiveReader reader) throws IOException {
+        int balance = 0;
+
+        for (Path segment : listSegments()) {
+            if (segmentStart(segment) >= openedArchivedCount) {
+                break;
+            }
+
+            TransactionLog records;
+            try (MappedAccountJournal journal = MappedAccountJournal.open(segment, false)) {
+                records = journal.load(balance);
+            }
+            if (!records.isEmpty()) {
+                balance = records.balanceAt(records.size() - 1);
+                reader.onSegment(records);
+            }
+        }
+    }
+
+    @Override
+    public void record(int epochDay, int amount, int balance) {
+        active().record(epochDay, amount, balance);
+        recordedBalance = balance;
+    }
+
+    @Override
+    public void commit() {
+        MappedAccountJournal active = active();
+        active.commit();
+
+        // The records are durable here, so a compaction error must not make the caller think they were not.
+        // Compaction runs on this thread: the commit that reaches the threshold also pays for a rename and
+        // up to three fsyncs. Writers that cannot absorb that spike open the journal with a threshold they
+        // never reach and call compact() from a maintenance thread, under the lock that serializes writes.
+        if (active.getCommittedCount() >= compactionThreshold) {
+            try {
+                compact();
+                compactionFailure = null;
+            } catch (IOException e) {
+                compactionFailure = e;
+            } catch (UncheckedIOException e) {
+                compactionFailure = e.getCause();
+            }
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (active != null) {
+            active.abort();
+        }
+    }
+
+    // Seals the active journal into an archived segment and snapshots the balance it ends on
+    public void compact() throws IOException {
+        MappedAccountJournal sealing = active();
+        sealing.commit();
+        long sealedCount = sealing.getCommittedCount();
+        if (sealedCount == 0) {
+            return;
+        }
+
+        Path activePath = directory.resolve(ACTIVE_FILE);
+        // Cleared first: a closed journal's mapping must never be written again, least of all once it is archived
+        active = null;
+        sealing.close();
+        try {
+            Files.move(activePath, segmentPath(archivedCount), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Nothing was sealed: keep recording into the same journal until a later compaction succeeds
+            try {
+                active = opener.open(activePath, forceOnCommit);
+            } catch (IOException reopen) {
+                e.addSuppressed(reopen);
+            }
+            throw e;
+        }
+
+        archivedCount += sealedCount;
+        snapshotBalance = recordedBalance;
+        active = opener.open(activePath, forceOnCommit);
+
+        // The rename must be durable before a snapshot counts the segment. A crash before the snapshot is
+        // written leaves a segment newer than it, which open() adopts.
+        forceDirectory();
+        writeSnapshot();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (active != null) {
+            active.close();
+        }
+    }
+
+    // The active journal, reopened first if a compaction closed it and could not open the next one. The
+    // archive and snapshot counters already match whatever file is at the active path, sealed or not.
+    private MappedAccountJournal active() {
+        if (active == null) {
+            try {
+                active = opener.open(directory.resolve(ACTIVE_FILE), forceOnCommit);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Active journal could not be reopened after a compaction", e);
+            }
+        }
+        return active;
+    }
+
+    private void adoptUnsnapshottedSegments() throws IOException {
+        boolean adopted = false;
+
+        for (Path segment : listSegments()) {
+            long start = segmentStart(segment);
+            if (start < archivedCount) {
+                continue;
+            }
+            if (start > archivedCount) {
+                throw new IOException("Archived segment " + segment.getFileName() + " does not follow record " + archivedCount);
+            }
+
+            try (MappedAccountJournal journal = MappedAccountJournal.open(segment, false)) {
+                TransactionLog records = journal.load(snapshotBalance);
+                archivedCount += records.size();
+                if (!records.isEmpty()) {
+                    snapshotBalance = records.balanceAt(records.size() - 1);
+                }
+            }
+            adopted = true;
+        }
+
+        if (adopted) {
+            writeSnapshot();
+        }
+    }
+
+    private void readSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            archivedCount = 0;
+            snapshotBalance = 0;
+            return;
+        }
+
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (snapshot.remaining() != SNAPSHOT_SIZE || snapshot.getInt(0) != SNAPSHOT_MAGIC || snapshot.getInt(4) != SNAPSHOT_VERSION) {
+            throw new IOException("Not an account snapshot, or an unsupported version: " + path);
+        }
+        if (snapshot.getInt(20) != checksum(snapshot.array())) {
+            throw new IOException("Account snapshot is corrupt: " + path);
+        }
+
+        archivedCount = snapshot.getLong(8);
+        snapshotBalance = snapshot.getInt(16);
+    }
+
+    private void writeSnapshot() throws IOException {
+        ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        snapshot.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(archivedCount).putInt(snapshotBalance);
+        snapshot.putInt(checksum(snapshot.array()));
+        snapshot.flip();
+
+        // Write aside, then rename over the old one, so a crash never leaves half a snapshot
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            // Contents first, or the rename could survive a power loss that the bytes do not
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    // Makes renames in the directory durable. Some platforms cannot open a directory for reading; there
+    // renames are only as durable as the file system makes them on its own.
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(SegmentedAccountJournal::isSegment).forEach(segments::add);
+        }
+        // Zero-padded start indexes make name order the record order
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentPath(long start) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // How the active journal is opened; tests substitute one that fails
+    interface ActiveOpener {
+        MappedAccountJournal open(Path path, boolean forceOnCommit) throws IOException;
+    }
+
+    private static int checksum(byte[] snapshot) {
+        CRC32C crc = new CRC32C();
+        crc.update(snapshot, 0, SNAPSHOT_SIZE - 4);
+        return (int) crc.getValue();
+    }
+}
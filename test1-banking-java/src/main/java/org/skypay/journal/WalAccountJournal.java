@@ -0,0 +1,47 @@
+package org.skypay.journal;
+
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// One account's view of a shared WriteAheadLog. Records are tagged with the account id;
+// commit() waits for the group commit that covers the last record of this account.
+public class WalAccountJournal implements AccountJournal {
+    
+    private final WriteAheadLog log;
+    private final long accountId;
+    private long lastSequence;
+    
+    public WalAccountJournal(WriteAheadLog log, long accountId) {
+        this.log = log;
+        this.accountId = accountId;
+    }
+    
+    @Override
+    public void record(int epochDay, int amount, int balance) {
+        lastSequence = log.append(accountId, epochDay, amount, balance);
+    }
+    
+    @Override
+    public void commit() {
+        log.sync(lastSequence);
+    }
+    
+    // Appends to the shared log cannot be taken back, but an append only fails once the whole log has
+    // failed, and a failed log never makes its pending records durable
+    @Override
+    public void abort() {
+    }
+    
+    // Replays the log and keeps the transactions of one account, ready to hand to the Account constructor
+    public static TransactionLog recover(Path path, long accountId) throws IOException {
+        TransactionLog history = new TransactionLog();
+        WriteAheadLog.replay(path, (id, epochDay, amount, balance) -> {
+            if (id == accountId) {
+                history.append(epochDay, amount, balance);
+            }
+        });
+        return history;
+    }
+}
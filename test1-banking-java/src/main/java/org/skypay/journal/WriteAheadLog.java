@@ -0,0 +1,296 @@
+package org.skypay.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Binary write-ahead log shared by many accounts. Appends only copy the record into a memory buffer;
+// sync() uses group commit: one caller becomes the leader, writes out everything buffered so far and
+// forces it to disk once, while callers that arrived in the meantime wait and ride on the same fsync.
+public class WriteAheadLog implements Closeable {
+
+    static final int MAGIC = 0x534B574C; // "SKWL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    // accountId, epochDay, amount, balance, CRC32C of the preceding 20 bytes
+    static final int RECORD_SIZE = 24;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer pending;
+    private final CRC32C checksum = new CRC32C();
+    private long appendedSequence;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncFinished = syncLock.newCondition();
+    private boolean syncInProgress;
+    private volatile long durableSequence;
+    private long syncCount;
+
+    // First write or fsync error. After one the file may hold any prefix of what was handed to the OS, and
+    // a later fsync could still persist records whose commit already failed, so the log refuses all work.
+    private volatile IOException failure;
+
+    WriteAheadLog(FileChannel channel, long recordCount) {
+        this.channel = channel;
+        this.pending = newBuffer();
+        this.appendedSequence = recordCount;
+        this.durableSequence = recordCount;
+    }
+
+    // Opens (or creates) the log, dropping a torn or corrupt tail left by a crash
+    public static WriteAheadLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long recordCount;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header, 0);
+                channel.force(true);
+                recordCount = 0;
+            } else {
+                recordCount = scan(channel, null);
+                channel.truncate(HEADER_SIZE + recordCount * RECORD_SIZE);
+            }
+            channel.position(HEADER_SIZE + recordCount * RECORD_SIZE);
+            return new WriteAheadLog(channel, recordCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Reads every intact record in append order, stopping at the first torn or corrupt one
+    public static long replay(Path path, RecordHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return scan(channel, handler);
+        }
+    }
+
+    // Buffers one record and returns its sequence number, to be passed to sync()
+    public long append(long accountId, int epochDay, int amount, int balance) {
+        appendLock.lock();
+        try {
+            checkNotFailed();
+            if (pending.remaining() < RECORD_SIZE) {
+                writePending();
+            }
+
+            int start = pending.position();
+            pending.putLong(accountId).putInt(epochDay).putInt(amount).putInt(balance);
+            checksum.reset();
+            checksum.update(pending.array(), start, PAYLOAD_SIZE);
+            pending.putInt((int) checksum.getValue());
+
+            return ++appendedSequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Returns once the record with this sequence number, and every one before it, is on disk
+    public void sync(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+
+        syncLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                checkNotFailed();
+                if (syncInProgress) {
+                    syncFinished.awaitUninterruptibly();
+                    continue;
+                }
+
+                syncInProgress = true;
+                syncLock.unlock();
+                long target;
+                try {
+                    target = flushAndForce();
+                } finally {
+                    syncLock.lock();
+                    syncInProgress = false;
+                    syncFinished.signalAll();
+                }
+                durableSequence = Math.max(durableSequence, target);
+                syncCount++;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    // Number of fsyncs issued so far; with concurrent writers this stays well below the record count
+    public long getSyncCount() {
+        syncLock.lock();
+        try {
+            return syncCount;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (failure != null) {
+            channel.close();
+            return;
+        }
+        try {
+            flushAndForce();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long flushAndForce() {
+        long target;
+        appendLock.lock();
+        try {
+            writePending();
+            target = appendedSequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        // The fsync runs outside appendLock, so writers keep buffering the next group meanwhile
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException(e);
+        }
+        return target;
+    }
+
+    private void writePending() throws IOException {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        pending.clear();
+    }
+
+    // Also cuts the file back to its durable records, so a reopen cannot pick up one whose commit failed
+    private void fail(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        try {
+            channel.truncate(HEADER_SIZE + durableSequence * RECORD_SIZE);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void checkNotFailed() {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier and accepts no more records", cause);
+        }
+    }
+
+    private static long scan(FileChannel channel, RecordHandler handler) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException("Not a write-ahead log: file is shorter than its header");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a write-ahead log, or an unsupported version");
+        }
+
+        ByteBuffer buffer = newBuffer();
+        CRC32C crc = new CRC32C();
+        long position = HEADER_SIZE;
+        long records = 0;
+
+        while (true) {
+            buffer.clear();
+            int read = readFully(channel, buffer, position);
+            buffer.flip();
+
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int start = buffer.position();
+                crc.reset();
+                crc.update(buffer.array(), start, PAYLOAD_SIZE);
+                long accountId = buffer.getLong();
+                int epochDay = buffer.getInt();
+                int amount = buffer.getInt();
+                int balance = buffer.getInt();
+                if (buffer.getInt() != (int) crc.getValue()) {
+                    return records;
+                }
+
+                if (handler != null) {
+                    handler.onRecord(accountId, epochDay, amount, balance);
+                }
+                records++;
+                position += RECORD_SIZE;
+            }
+
+            // A short read means end of file; leftover bytes are a torn record
+            if (read < buffer.capacity()) {
+                return records;
+            }
+        }
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public interface RecordHandler {
+        void onRecord(long accountId, int epochDay, int amount, int balance);
+    }
+}
@@ -2,84 +2,376 @@ package org.skypay.model;
 
 import org.skypay.exception.InsufficientBalanceException;
 import org.skypay.exception.InvalidAmountException;
+import org.skypay.journal.AccountJournal;
 import org.skypay.service.AccountService;
+import org.skypay.service.StatementExporter;
 import org.skypay.service.StatementPrinter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.time.YearMonth;
 import java.util.List;
 
 public class Account implements AccountService {
     
+    // Operation codes stored with each idempotency key, so a key cannot be replayed for the other operation.
+    // Undated requests have their own codes and are bound without a day, so a retry after midnight still matches.
+    private static final int KEYED_DEPOSIT = 1;
+    private static final int KEYED_WITHDRAWAL = 2;
+    private static final int KEYED_DEPOSIT_TODAY = 3;
+    private static final int KEYED_WITHDRAWAL_TODAY = 4;
+    
     private int balance;
-    private final List<Transaction> transactions;
+    private final TransactionLog transactions;
+    private final MonthlyRollups monthlyRollups;
     private final StatementPrinter statementPrinter;
+    private final AccountJournal journal;
+    private final DayClock dayClock;
+    // Created on the first keyed operation, so accounts that never see a key pay nothing for it
+    private IdempotencyCache idempotencyCache;
     
     public Account() {
-        this.balance = 0;
-        this.transactions = new ArrayList<>();
+        this(AccountJournal.NONE);
+    }
+    
+    // Durable mode: every transaction is journaled and committed before it is applied
+    public Account(AccountJournal journal) {
+        this(new TransactionLog(), journal);
+    }
+    
+    // Rebuilds an account from history recovered out of its journal
+    public Account(TransactionLog history, AccountJournal journal) {
+        this(0, history, journal);
+    }
+    
+    // Rebuilds an account from a snapshot balance plus only the history recorded since that snapshot
+    public Account(int openingBalance, TransactionLog history, AccountJournal journal) {
+        this(openingBalance, history, journal, DayClock.SYSTEM);
+    }
+    
+    // Operations without an explicit date are dated by dayClock
+    public Account(int openingBalance, TransactionLog history, AccountJournal journal, DayClock dayClock) {
+        this.balance = history.isEmpty() ? openingBalance : history.balanceAt(history.size() - 1);
+        this.transactions = history;
+        this.monthlyRollups = new MonthlyRollups();
+        // Recovered history is rolled up once here; from then on each append updates its month
+        for (int i = 0; i < history.size(); i++) {
+            monthlyRollups.record(history.epochDayAt(i), history.amountAt(i), history.balanceAt(i));
+        }
         this.statementPrinter = new StatementPrinter();
+        this.journal = journal;
+        this.dayClock = dayClock;
     }
     
     @Override
     public void deposite(int amount) {
-        if (amount <= 0) {
-            throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
-        }
-        
-        balance += amount;
-        transactions.add(new Transaction(LocalDate.now(), amount, balance));
+        requireDeposited(tryDepositOn(amount, dayClock.today()), amount);
     }
     
     // Overload for testing with specific dates
     public void deposite(int amount, LocalDate date) {
-        if (amount <= 0) {
-            throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
+        requireDeposited(tryDepositOn(amount, Math.toIntExact(date.toEpochDay())), amount);
+    }
+    
+    @Override
+    public void withdraw(int amount) {
+        requireWithdrawn(tryWithdrawOn(amount, dayClock.today()), amount);
+    }
+    
+    // Overload for testing with specific dates
+    public void withdraw(int amount, LocalDate date) {
+        requireWithdrawn(tryWithdrawOn(amount, Math.toIntExact(date.toEpochDay())), amount);
+    }
+    
+    // Non-throwing variants for paths where rejections are routine: the result packs a TransactionOutcome
+    // code with the balance afterwards, read back through TransactionOutcome.code() and balance()
+    public long tryDeposit(int amount) {
+        return tryDepositOn(amount, dayClock.today());
+    }
+    
+    public long tryDeposit(int amount, LocalDate date) {
+        return tryDepositOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+    
+    public long tryWithdraw(int amount) {
+        return tryWithdrawOn(amount, dayClock.today());
+    }
+    
+    public long tryWithdraw(int amount, LocalDate date) {
+        return tryWithdrawOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+    
+    // Keyed variants for client retries: a key seen before returns the original result without applying
+    // the operation again, until the key expires from the account's IdempotencyCache. Only applied results
+    // are remembered, so a rejected request is evaluated again when retried. A key reused for a different
+    // operation, amount or date throws IdempotencyKeyConflictException. Without a date the operation is
+    // dated by dayClock when it is first applied, and the key is bound to the operation and amount only.
+    public long tryDeposit(int amount, long idempotencyKey) {
+        return idempotencyCache().getOrCompute(idempotencyKey, KEYED_DEPOSIT_TODAY, amount, 0,
+            () -> tryDepositOn(amount, dayClock.today()));
+    }
+    
+    public long tryDeposit(int amount, LocalDate date, long idempotencyKey) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        return idempotencyCache().getOrCompute(idempotencyKey, KEYED_DEPOSIT, amount, epochDay,
+            () -> tryDepositOn(amount, epochDay));
+    }
+    
+    public long tryWithdraw(int amount, long idempotencyKey) {
+        return idempotencyCache().getOrCompute(idempotencyKey, KEYED_WITHDRAWAL_TODAY, amount, 0,
+            () -> tryWithdrawOn(amount, dayClock.today()));
+    }
+    
+    public long tryWithdraw(int amount, LocalDate date, long idempotencyKey) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        return idempotencyCache().getOrCompute(idempotencyKey, KEYED_WITHDRAWAL, amount, epochDay,
+            () -> tryWithdrawOn(amount, epochDay));
+    }
+    
+    // Throwing keyed variants: a rejection is not remembered, so a retry is checked against the current balance
+    public void deposite(int amount, LocalDate date, long idempotencyKey) {
+        requireDeposited(tryDeposit(amount, date, idempotencyKey), amount);
+    }
+    
+    public void withdraw(int amount, LocalDate date, long idempotencyKey) {
+        requireWithdrawn(tryWithdraw(amount, date, idempotencyKey), amount);
+    }
+    
+    // Applies signed amounts in order: positive values are deposits, negative values withdrawals.
+    // A rejected item does not stop the batch; its code in the returned array says why it was skipped.
+    public int[] applyBatch(int[] amounts) {
+        return applyBatchOn(amounts, dayClock.today());
+    }
+    
+    public int[] applyBatch(int[] amounts, LocalDate date) {
+        return applyBatchOn(amounts, Math.toIntExact(date.toEpochDay()));
+    }
+    
+    private int[] applyBatchOn(int[] amounts, int epochDay) {
+        int[] outcomes = new int[amounts.length];
+        
+        // First pass decides each outcome and journals the accepted items, so one commit covers the whole batch
+        int projectedBalance = balance;
+        try {
+            for (int i = 0; i < amounts.length; i++) {
+                int amount = amounts[i];
+                
+                // Zero, and MIN_VALUE which has no positive counterpart, are not valid amounts
+                if (amount == 0 || amount == Integer.MIN_VALUE) {
+                    outcomes[i] = TransactionOutcome.INVALID_AMOUNT;
+                } else if (amount < 0 && projectedBalance < -amount) {
+                    outcomes[i] = TransactionOutcome.INSUFFICIENT_BALANCE;
+                } else {
+                    projectedBalance += amount;
+                    journal.record(epochDay, amount, projectedBalance);
+                    outcomes[i] = TransactionOutcome.APPLIED;
+                }
+            }
+        } catch (RuntimeException e) {
+            // All or nothing: the items recorded before the failure must not ride on a later commit
+            journal.abort();
+            throw e;
+        }
+        journal.commit();
+        
+        transactions.ensureCapacity(transactions.size() + amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            if (outcomes[i] == TransactionOutcome.APPLIED) {
+                balance += amounts[i];
+                transactions.append(epochDay, amounts[i], balance);
+                monthlyRollups.record(epochDay, amounts[i], balance);
+            }
         }
         
-        balance += amount;
-        transactions.add(new Transaction(date, amount, balance));
+        return outcomes;
     }
     
     @Override
-    public void withdraw(int amount) {
+    public void printStatement() {
+        statementPrinter.print(transactions);
+    }
+    
+    // Statement restricted to transactions dated between from and to, both inclusive
+    public void printStatement(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Statement start " + from + " is after its end " + to);
+        }
+        
+        int fromDay = Math.toIntExact(from.toEpochDay());
+        int toDay = Math.toIntExact(to.toEpochDay());
+        
+        if (transactions.isChronological()) {
+            // Dates only ever grow, so the window is one contiguous run found by binary search
+            statementPrinter.print(transactions, transactions.firstIndexOnOrAfter(fromDay), transactions.firstIndexAfter(toDay));
+        } else {
+            statementPrinter.print(transactionsBetween(fromDay, toDay));
+        }
+    }
+    
+    // One page of the statement: skips the offset most recent transactions, then prints at most limit of them
+    public void printStatement(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative, received: " + offset + ", " + limit);
+        }
+        
+        int toIndex = Math.max(0, transactions.size() - offset);
+        int fromIndex = Math.max(0, toIndex - limit);
+        statementPrinter.print(transactions, fromIndex, toIndex);
+    }
+    
+    // Full history, oldest first, as CSV or NDJSON; returns the number of bytes written
+    public long exportStatement(StatementExporter.Format format, Path file) throws IOException {
+        return new StatementExporter().export(transactions, format, file);
+    }
+    
+    public long exportStatement(StatementExporter.Format format, OutputStream out) throws IOException {
+        return new StatementExporter().export(transactions, format, out);
+    }
+    
+    // Full history including what the journal archived before this account was rebuilt from its tail, such as
+    // the sealed segments of a SegmentedAccountJournal. They are streamed one at a time ahead of the live rows.
+    public long exportFullStatement(StatementExporter.Format format, Path file) throws IOException {
+        return new StatementExporter().export(journal, transactions, format, file);
+    }
+    
+    public long exportFullStatement(StatementExporter.Format format, OutputStream out) throws IOException {
+        return new StatementExporter().export(journal, transactions, format, out);
+    }
+    
+    // Compresses history dated before date into the cold tier; statements reaching back that far decode it on demand
+    public void compactHistoryBefore(LocalDate date) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        
+        int index = 0;
+        if (transactions.isChronological()) {
+            index = transactions.firstIndexOnOrAfter(epochDay);
+        } else {
+            // Stop at the first row on or after date, so everything compacted is older than it
+            while (index < transactions.size() && transactions.epochDayAt(index) < epochDay) {
+                index++;
+            }
+        }
+        transactions.compactBefore(index);
+    }
+    
+    // For testing purposes
+    public int getBalance() {
+        return balance;
+    }
+    
+    // Balance at the end of the given day. Before the first recorded transaction it is the opening balance:
+    // 0 for a new account, the snapshot balance for one rebuilt from a snapshot and its tail.
+    public int balanceAt(LocalDate date) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        
+        if (transactions.isChronological()) {
+            int lastIndex = transactions.firstIndexAfter(epochDay) - 1;
+            return lastIndex < 0 ? openingBalance() : transactions.balanceAt(lastIndex);
+        }
+        
+        // Back-dated history: the latest recorded transaction dated on or before that day wins
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            if (transactions.epochDayAt(i) <= epochDay) {
+                return transactions.balanceAt(i);
+            }
+        }
+        return openingBalance();
+    }
+    
+    // Deposit and withdrawal totals and closing balance of every month with transactions, oldest first.
+    // Read from rollups maintained on each append, so the cost depends on the number of months only.
+    public List<MonthlySummary> monthlySummaries() {
+        return monthlyRollups.all();
+    }
+    
+    public List<MonthlySummary> monthlySummaries(YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Summary start " + from + " is after its end " + to);
+        }
+        return monthlyRollups.between(from, to);
+    }
+    
+    // Read by AccountCodec
+    TransactionLog history() {
+        return transactions;
+    }
+    
+    // Balance before the first recorded transaction: the snapshot balance of an account rebuilt from one
+    int openingBalance() {
+        return transactions.isEmpty() ? balance : transactions.balanceAt(0) - transactions.amountAt(0);
+    }
+    
+    private IdempotencyCache idempotencyCache() {
+        if (idempotencyCache == null) {
+            idempotencyCache = new IdempotencyCache();
+        }
+        return idempotencyCache;
+    }
+    
+    private long tryDepositOn(int amount, int epochDay) {
         if (amount <= 0) {
-            throw new InvalidAmountException("Withdrawal amount must be positive, received: " + amount);
+            return TransactionOutcome.of(TransactionOutcome.INVALID_AMOUNT, balance);
         }
         
+        apply(epochDay, amount);
+        return TransactionOutcome.of(TransactionOutcome.APPLIED, balance);
+    }
+    
+    private long tryWithdrawOn(int amount, int epochDay) {
+        if (amount <= 0) {
+            return TransactionOutcome.of(TransactionOutcome.INVALID_AMOUNT, balance);
+        }
         if (balance < amount) {
-            throw new InsufficientBalanceException(
-                "Insufficient balance. Available: " + balance + ", requested: " + amount
-            );
+            return TransactionOutcome.of(TransactionOutcome.INSUFFICIENT_BALANCE, balance);
         }
         
-        balance -= amount;
-        transactions.add(new Transaction(LocalDate.now(), -amount, balance));
+        apply(epochDay, -amount);
+        return TransactionOutcome.of(TransactionOutcome.APPLIED, balance);
     }
     
-    // Overload for testing with specific dates
-    public void withdraw(int amount, LocalDate date) {
-        if (amount <= 0) {
+    private static void requireDeposited(long result, int amount) {
+        if (!TransactionOutcome.isApplied(result)) {
+            throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
+        }
+    }
+    
+    private static void requireWithdrawn(long result, int amount) {
+        int outcome = TransactionOutcome.code(result);
+        
+        if (outcome == TransactionOutcome.INVALID_AMOUNT) {
             throw new InvalidAmountException("Withdrawal amount must be positive, received: " + amount);
         }
         
-        if (balance < amount) {
+        if (outcome == TransactionOutcome.INSUFFICIENT_BALANCE) {
             throw new InsufficientBalanceException(
-                "Insufficient balance. Available: " + balance + ", requested: " + amount
+                "Insufficient balance. Available: " + TransactionOutcome.balance(result) + ", requested: " + amount
             );
         }
-        
-        balance -= amount;
-        transactions.add(new Transaction(date, -amount, balance));
     }
     
-    @Override
-    public void printStatement() {
-        statementPrinter.print(transactions);
+    private void apply(int epochDay, int signedAmount) {
+        int newBalance = balance + signedAmount;
+        
+        // Write-ahead: if journaling fails the account is left untouched
+        journal.record(epochDay, signedAmount, newBalance);
+        journal.commit();
+        
+        balance = newBalance;
+        transactions.append(epochDay, signedAmount, newBalance);
+        monthlyRollups.record(epochDay, signedAmount, newBalance);
     }
     
-    // For testing purposes
-    public int getBalance() {
-        return balance;
+    // Back-dated entries break date order; fall back to a filtered copy in that case
+    private TransactionLog transactionsBetween(int fromDay, int toDay) {
+        TransactionLog matching = new TransactionLog();
+        for (int i = 0; i < transactions.size(); i++) {
+            int epochDay = transactions.epochDayAt(i);
+            if (epochDay >= fromDay && epochDay <= toDay) {
+                matching.append(epochDay, transactions.amountAt(i), transactions.balanceAt(i));
+            }
+        }
+        return matching;
     }
 }
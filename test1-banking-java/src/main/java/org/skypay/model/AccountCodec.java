@@ -0,0 +1,157 @@
+package org.skypay.model;
+
+import org.skypay.journal.AccountJournal;
+
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+// Compact binary format for transactions and whole accounts, written and parsed by hand: no reflection,
+// no intermediate objects. Every message starts with a fixed 4-byte header ('S', 'K', version, kind)
+// followed by zigzag varints, so typical values take one to three bytes.
+//
+// An account snapshot holds the opening balance, the row count and the first row's date, then each row
+// delta-encoded as in the cold tier: a header varint with the day delta and a flag for a balance that
+// does not follow from the previous one, the amount, and that balance's residual if flagged. A CRC32C of
+// everything before it closes the snapshot, so a damaged copy is rejected instead of restored.
+public final class AccountCodec {
+
+    static final byte MAGIC_0 = 'S';
+    static final byte MAGIC_1 = 'K';
+    static final byte VERSION = 1;
+    static final byte KIND_TRANSACTION = 1;
+    static final byte KIND_ACCOUNT = 2;
+    static final int HEADER_SIZE = 4;
+    private static final int CHECKSUM_SIZE = 4;
+
+    private AccountCodec() {
+    }
+
+    public static byte[] encode(Transaction transaction) {
+        byte[] buffer = new byte[HEADER_SIZE + 3 * Varints.MAX_LENGTH];
+        int position = putHeader(buffer, KIND_TRANSACTION);
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(transaction.getEpochDay()));
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(transaction.getAmount()));
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(transaction.getBalance()));
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public static Transaction decodeTransaction(byte[] data) {
+        Varints.Reader reader = new Varints.Reader(data, checkHeader(data, KIND_TRANSACTION), data.length);
+        Transaction transaction = new Transaction(reader.nextInt(), reader.nextInt(), reader.nextInt());
+        requireConsumed(reader, data.length);
+        return transaction;
+    }
+
+    public static byte[] encode(Account account) {
+        return encode(account.history(), account.openingBalance());
+    }
+
+    // Snapshot of any history, e.g. a ConcurrentAccount's getTransactions(); openingBalance is the balance before its first row
+    public static byte[] encode(TransactionLog history, int openingBalance) {
+        int rows = history.size();
+        // A typical row takes two or three bytes
+        long estimate = HEADER_SIZE + 3 * Varints.MAX_LENGTH + rows * 3L + CHECKSUM_SIZE;
+        byte[] buffer = new byte[(int) Math.min(estimate, Integer.MAX_VALUE - 8)];
+        int position = putHeader(buffer, KIND_ACCOUNT);
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(openingBalance));
+        position = Varints.putVarLong(buffer, position, rows);
+
+        if (rows > 0) {
+            int previousDay = history.epochDayAt(0);
+            int previousBalance = openingBalance;
+            position = Varints.putVarLong(buffer, position, Varints.zigZag(previousDay));
+
+            for (int i = 0; i < rows; i++) {
+                // Room for the longest row and the checksum
+                if (buffer.length - position < Varints.MAX_ROW_LENGTH + CHECKSUM_SIZE) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+
+                int epochDay = history.epochDayAt(i);
+                int balance = history.balanceAt(i);
+                position = Varints.putRow(buffer, position, previousDay, previousBalance, epochDay, history.amountAt(i), balance);
+
+                previousDay = epochDay;
+                previousBalance = balance;
+            }
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer, 0, position);
+        int checksum = (int) crc.getValue();
+        buffer[position++] = (byte) checksum;
+        buffer[position++] = (byte) (checksum >>> 8);
+        buffer[position++] = (byte) (checksum >>> 16);
+        buffer[position++] = (byte) (checksum >>> 24);
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public static Account decodeAccount(byte[] data) {
+        return decodeAccount(data, AccountJournal.NONE);
+    }
+
+    // Restores the snapshot as an account that journals new transactions to journal
+    public static Account decodeAccount(byte[] data, AccountJournal journal) {
+        int start = checkHeader(data, KIND_ACCOUNT);
+        int limit = data.length - CHECKSUM_SIZE;
+        if (limit < start) {
+            throw new IllegalArgumentException("Account snapshot is truncated");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, limit);
+        int checksum = (data[limit] & 0xFF) | (data[limit + 1] & 0xFF) << 8
+            | (data[limit + 2] & 0xFF) << 16 | (data[limit + 3] & 0xFF) << 24;
+        if (checksum != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Account snapshot checksum mismatch");
+        }
+
+        Varints.Reader reader = new Varints.Reader(data, start, limit);
+        int openingBalance = reader.nextInt();
+        long rows = reader.nextVarLong();
+        // Every row takes at least two bytes, which bounds the allocation below by the input size
+        if (rows > (limit - reader.position()) / 2) {
+            throw new IllegalArgumentException("Account snapshot claims " + rows + " rows in " + data.length + " bytes");
+        }
+
+        TransactionLog history = new TransactionLog((int) rows);
+        if (rows > 0) {
+            // Rows are relative to the one before, and the first to the first day itself
+            Varints.RowReader rowReader = new Varints.RowReader(reader, reader.nextInt(), openingBalance);
+            for (int i = 0; i < rows; i++) {
+                rowReader.next();
+                history.append(rowReader.day(), rowReader.amount(), rowReader.balance());
+            }
+        }
+        requireConsumed(reader, limit);
+
+        return new Account(openingBalance, history, journal);
+    }
+
+    private static int putHeader(byte[] buffer, byte kind) {
+        buffer[0] = MAGIC_0;
+        buffer[1] = MAGIC_1;
+        buffer[2] = VERSION;
+        buffer[3] = kind;
+        return HEADER_SIZE;
+    }
+
+    private static int checkHeader(byte[] data, byte kind) {
+        if (data.length < HEADER_SIZE || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+            throw new IllegalArgumentException("Not an encoded account or transaction");
+        }
+        if (data[2] != VERSION) {
+            throw new IllegalArgumentException("Unsupported encoding version " + data[2]);
+        }
+        if (data[3] != kind) {
+            throw new IllegalArgumentException("Expected encoding kind " + kind + ", found " + data[3]);
+        }
+        return HEADER_SIZE;
+    }
+
+    private static void requireConsumed(Varints.Reader reader, int limit) {
+        if (reader.position() != limit) {
+            throw new IllegalArgumentException((limit - reader.position()) + " unexpected trailing bytes");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.skypay.model;
+
+import java.util.Arrays;
+
+// A frozen run of ROWS transactions, delta + varint encoded. Dates move by zero or one day between rows
+// and each balance is the previous one plus the amount, so a typical row is a one-byte header plus the
+// amount: the header carries the day delta and a flag for the rare row whose balance does not follow.
+final class ColdSegment {
+
+    static final int ROWS = 1 << 10;
+
+    // Day and balance "before" the first row, so the first row is encoded like every other one
+    private final int baseDay;
+    private final int baseBalance;
+    private final byte[] data;
+
+    private ColdSegment(int baseDay, int baseBalance, byte[] data) {
+        this.baseDay = baseDay;
+        this.baseBalance = baseBalance;
+        this.data = data;
+    }
+
+    static ColdSegment encode(RowStore rows, int from) {
+        int baseDay = rows.epochDayAt(from);
+        int baseBalance = rows.balanceAt(from) - rows.amountAt(from);
+        byte[] buffer = new byte[ROWS * 4];
+        int position = 0;
+
+        int previousDay = baseDay;
+        int previousBalance = baseBalance;
+        for (int i = from; i < from + ROWS; i++) {
+            if (buffer.length - position < Varints.MAX_ROW_LENGTH) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            int epochDay = rows.epochDayAt(i);
+            int balance = rows.balanceAt(i);
+            position = Varints.putRow(buffer, position, previousDay, previousBalance, epochDay, rows.amountAt(i), balance);
+
+            previousDay = epochDay;
+            previousBalance = balance;
+        }
+
+        return new ColdSegment(baseDay, baseBalance, Arrays.copyOf(buffer, position));
+    }
+
+    // Fills ROWS entries of each column
+    void decode(int[] epochDays, int[] amounts, int[] balances) {
+        Varints.RowReader reader = new Varints.RowReader(new Varints.Reader(data), baseDay, baseBalance);
+
+        for (int i = 0; i < ROWS; i++) {
+            reader.next();
+            epochDays[i] = reader.day();
+            amounts[i] = reader.amount();
+            balances[i] = reader.balance();
+        }
+    }
+
+    int sizeInBytes() {
+        return data.length;
+    }
+}
@@ -0,0 +1,244 @@
+package org.skypay.model;
+
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.exception.InvalidAmountException;
+import org.skypay.service.AccountService;
+import org.skypay.service.StatementPrinter;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Thread-safe variant of Account. Balance and transaction count share one 64-bit word, so a single
+// compare-and-set both checks the balance and reserves the next log slot. Only transfers lock, by
+// setting a bit in that same word, so deposits and withdrawals never block on anything but a transfer.
+public class ConcurrentAccount implements AccountService {
+
+    // Set while a transfer holds the account; the slot count never reaches 2^31, so its top bit is free
+    private static final long LOCKED = 1L << 63;
+    // Gives transfers one global lock order, so two transfers over the same pair can never deadlock
+    private static final AtomicLong LOCK_ORDER = new AtomicLong();
+
+    // High 32 bits: lock bit and number of reserved log slots, low 32 bits: balance
+    private final AtomicLong state;
+    private final long lockOrder;
+    private final ConcurrentTransactionLog transactions;
+    private final StatementPrinter statementPrinter;
+    private final DayClock dayClock;
+
+    public ConcurrentAccount() {
+        this(DayClock.SYSTEM);
+    }
+
+    // Operations without an explicit date are dated by dayClock
+    public ConcurrentAccount(DayClock dayClock) {
+        this.dayClock = dayClock;
+        this.state = new AtomicLong(0);
+        this.lockOrder = LOCK_ORDER.getAndIncrement();
+        this.transactions = new ConcurrentTransactionLog();
+        this.statementPrinter = new StatementPrinter();
+    }
+
+    @Override
+    public void deposite(int amount) {
+        depositOn(amount, dayClock.today());
+    }
+
+    public void deposite(int amount, LocalDate date) {
+        depositOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+
+    @Override
+    public void withdraw(int amount) {
+        withdrawOn(amount, dayClock.today());
+    }
+
+    public void withdraw(int amount, LocalDate date) {
+        withdrawOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+
+    public static void transfer(ConcurrentAccount from, ConcurrentAccount to, int amount) {
+        transferOn(from, to, amount, from.dayClock.today());
+    }
+
+    public static void transfer(ConcurrentAccount from, ConcurrentAccount to, int amount, LocalDate date) {
+        transferOn(from, to, amount, Math.toIntExact(date.toEpochDay()));
+    }
+
+    private void depositOn(int amount, int epochDay) {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
+        }
+
+        while (true) {
+            long current = state.get();
+            if (isLocked(current)) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int index = countOf(current);
+            int newBalance = balanceOf(current) + amount;
+
+            int count = reserveSlot(index);
+            transactions.ensureCapacity(index);
+            if (state.compareAndSet(current, pack(count, newBalance))) {
+                transactions.write(index, epochDay, amount, newBalance);
+                return;
+            }
+        }
+    }
+
+    private void withdrawOn(int amount, int epochDay) {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Withdrawal amount must be positive, received: " + amount);
+        }
+
+        while (true) {
+            long current = state.get();
+            if (isLocked(current)) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int index = countOf(current);
+            int balance = balanceOf(current);
+
+            // Checked against the same snapshot the CAS commits, so the check and the debit are atomic
+            if (balance < amount) {
+                throw new InsufficientBalanceException(
+                    "Insufficient balance. Available: " + balance + ", requested: " + amount
+                );
+            }
+
+            int newBalance = balance - amount;
+            int count = reserveSlot(index);
+            transactions.ensureCapacity(index);
+            if (state.compareAndSet(current, pack(count, newBalance))) {
+                transactions.write(index, epochDay, -amount, newBalance);
+                return;
+            }
+        }
+    }
+
+    // Moves amount atomically: either both accounts record it or neither does. Both accounts are locked
+    // in lockOrder order for the few instructions it takes, so transfers over disjoint pairs never contend.
+    private static void transferOn(ConcurrentAccount from, ConcurrentAccount to, int amount, int epochDay) {
+        if (amount <= 0) {
+            throw new InvalidAmountException("Transfer amount must be positive, received: " + amount);
+        }
+        if (from == to) {
+            throw new IllegalArgumentException("Cannot transfer from an account to itself");
+        }
+
+        boolean fromFirst = from.lockOrder < to.lockOrder;
+        long firstState = (fromFirst ? from : to).lock();
+        long secondState = (fromFirst ? to : from).lock();
+        long fromState = fromFirst ? firstState : secondState;
+        long toState = fromFirst ? secondState : firstState;
+
+        int fromIndex = countOf(fromState);
+        int toIndex = countOf(toState);
+        int available = balanceOf(fromState);
+
+        // A rejected transfer unlocks both accounts unchanged
+        if (available < amount) {
+            to.state.set(toState);
+            from.state.set(fromState);
+            throw new InsufficientBalanceException(
+                "Insufficient balance. Available: " + available + ", requested: " + amount
+            );
+        }
+        if (fromIndex >= ConcurrentTransactionLog.MAX_SIZE || toIndex >= ConcurrentTransactionLog.MAX_SIZE) {
+            to.state.set(toState);
+            from.state.set(fromState);
+            throw new IllegalStateException("Transaction log is full");
+        }
+        try {
+            from.transactions.ensureCapacity(fromIndex);
+            to.transactions.ensureCapacity(toIndex);
+        } catch (Throwable e) {
+            to.state.set(toState);
+            from.state.set(fromState);
+            throw e;
+        }
+
+        int fromBalance = available - amount;
+        int toBalance = balanceOf(toState) + amount;
+
+        // Unlocking commits both sides; the reserved rows are filled in afterwards, as deposits do
+        to.state.set(pack(toIndex + 1, toBalance));
+        from.state.set(pack(fromIndex + 1, fromBalance));
+        from.transactions.write(fromIndex, epochDay, -amount, fromBalance);
+        to.transactions.write(toIndex, epochDay, amount, toBalance);
+    }
+
+    @Override
+    public void printStatement() {
+        statementPrinter.print(getTransactions());
+    }
+
+    public int getBalance() {
+        return balanceOf(unlockedState());
+    }
+
+    public int getTransactionCount() {
+        return countOf(unlockedState());
+    }
+
+    // Consistent copy of every transaction committed so far
+    public TransactionLog getTransactions() {
+        return transactions.snapshot(countOf(unlockedState()));
+    }
+
+    // Consistent copy of at most the limit most recent transactions, oldest first
+    public TransactionLog getRecentTransactions(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative, received: " + limit);
+        }
+        int count = countOf(unlockedState());
+        return transactions.snapshot(Math.max(0, count - limit), count);
+    }
+
+    // A locked word still holds the balance from before the transfer, and the other side may already
+    // show the transfer, so reads wait for the unlock the same way deposits and withdrawals do
+    private long unlockedState() {
+        long current = state.get();
+        while (isLocked(current)) {
+            Thread.onSpinWait();
+            current = state.get();
+        }
+        return current;
+    }
+
+    // Spins until the lock bit is ours and returns the state it guards, without the bit
+    private long lock() {
+        while (true) {
+            long current = state.get();
+            if (!isLocked(current) && state.compareAndSet(current, current | LOCKED)) {
+                return current;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static int reserveSlot(int index) {
+        if (index >= ConcurrentTransactionLog.MAX_SIZE) {
+            throw new IllegalStateException("Transaction log is full");
+        }
+        return index + 1;
+    }
+
+    private static long pack(int count, int balance) {
+        return ((long) count << 32) | (balance & 0xFFFFFFFFL);
+    }
+
+    private static int countOf(long state) {
+        return (int) (state >>> 32) & Integer.MAX_VALUE;
+    }
+
+    private static boolean isLocked(long state) {
+        return (state & LOCKED) != 0;
+    }
+
+    private static int balanceOf(long state) {
+        return (int) state;
+    }
+}
@@ -0,0 +1,125 @@
+package org.skypay.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Append-only log shared by concurrent writers. Slots are reserved by the caller (see ConcurrentAccount),
+// so writers never coordinate here beyond installing a new chunk; readers wait for a slot to be published.
+public class ConcurrentTransactionLog {
+
+    // Chunk k holds 2^(k + FIRST_CHUNK_SHIFT) rows, so small accounts stay small and nothing is ever copied
+    private static final int FIRST_CHUNK_SHIFT = 4;
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+    private static final int MAX_CHUNKS = 32 - FIRST_CHUNK_SHIFT;
+
+    public static final int MAX_SIZE = Integer.MAX_VALUE - FIRST_CHUNK_SIZE + 1;
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    // Installs the chunk holding index. Writers call it before reserving the slot, so once a slot is
+    // reserved nothing left on the way to write() can fail and leave readers waiting for it forever.
+    public void ensureCapacity(int index) {
+        chunkFor(index + FIRST_CHUNK_SIZE);
+    }
+
+    public void write(int index, int epochDay, int amount, int balance) {
+        int position = index + FIRST_CHUNK_SIZE;
+        Chunk chunk = chunkFor(position);
+        int slot = slotOf(position);
+
+        chunk.epochDays[slot] = epochDay;
+        chunk.amounts[slot] = amount;
+        chunk.balances[slot] = balance;
+        PUBLISHED.setRelease(chunk.published, slot, 1);
+    }
+
+    public int epochDayAt(int index) {
+        int position = index + FIRST_CHUNK_SIZE;
+        return awaitPublished(position).epochDays[slotOf(position)];
+    }
+
+    public int amountAt(int index) {
+        int position = index + FIRST_CHUNK_SIZE;
+        return awaitPublished(position).amounts[slotOf(position)];
+    }
+
+    public int balanceAt(int index) {
+        int position = index + FIRST_CHUNK_SIZE;
+        return awaitPublished(position).balances[slotOf(position)];
+    }
+
+    // Copies the first count rows, waiting for any reserved slot still being written
+    public TransactionLog snapshot(int count) {
+        return snapshot(0, count);
+    }
+
+    // Copies rows fromIndex (inclusive) to toIndex (exclusive), so a page costs its own length only
+    public TransactionLog snapshot(int fromIndex, int toIndex) {
+        TransactionLog snapshot = new TransactionLog(toIndex - fromIndex);
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            int position = i + FIRST_CHUNK_SIZE;
+            Chunk chunk = awaitPublished(position);
+            int slot = slotOf(position);
+            snapshot.append(chunk.epochDays[slot], chunk.amounts[slot], chunk.balances[slot]);
+        }
+
+        return snapshot;
+    }
+
+    private Chunk awaitPublished(int position) {
+        int chunkIndex = chunkIndexOf(position);
+        int slot = slotOf(position);
+
+        Chunk chunk = chunks.get(chunkIndex);
+        while (chunk == null) {
+            Thread.onSpinWait();
+            chunk = chunks.get(chunkIndex);
+        }
+
+        while ((int) PUBLISHED.getAcquire(chunk.published, slot) == 0) {
+            Thread.onSpinWait();
+        }
+
+        return chunk;
+    }
+
+    private Chunk chunkFor(int position) {
+        int chunkIndex = chunkIndexOf(position);
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        Chunk created = new Chunk(1 << (chunkIndex + FIRST_CHUNK_SHIFT));
+        if (chunks.compareAndSet(chunkIndex, null, created)) {
+            return created;
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private static int chunkIndexOf(int position) {
+        return (31 - Integer.numberOfLeadingZeros(position)) - FIRST_CHUNK_SHIFT;
+    }
+
+    private static int slotOf(int position) {
+        return position - Integer.highestOneBit(position);
+    }
+
+    private static final class Chunk {
+        final int[] epochDays;
+        final int[] amounts;
+        final int[] balances;
+        final int[] published;
+
+        Chunk(int capacity) {
+            this.epochDays = new int[capacity];
+            this.amounts = new int[capacity];
+            this.balances = new int[capacity];
+            this.published = new int[capacity];
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.skypay.model;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+// Today's date as an epoch day, computed once per day instead of building a LocalDate per transaction.
+// Each call reads only the millisecond clock and compares it with the cached next midnight.
+public class DayClock {
+
+    // Shared clock in the system default time zone, as LocalDate.now() would use
+    public static final DayClock SYSTEM = new DayClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Day current;
+
+    public DayClock(Clock clock) {
+        this.clock = clock;
+        this.current = dayAt(clock);
+    }
+
+    public int today() {
+        Day day = current;
+        if (clock.millis() >= day.endMillis) {
+            day = dayAt(clock);
+            current = day;
+        }
+        return day.epochDay;
+    }
+
+    private static Day dayAt(Clock clock) {
+        LocalDate today = LocalDate.now(clock);
+        // Next midnight in the clock's zone, so days that are not 24 hours long (DST changes) are handled
+        long endMillis = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        return new Day(Math.toIntExact(today.toEpochDay()), endMillis);
+    }
+
+    // Immutable pair published through one volatile field, so readers never see a day with another day's end
+    private static final class Day {
+
+        final int epochDay;
+        final long endMillis;
+
+        Day(int epochDay, long endMillis) {
+            this.epochDay = epochDay;
+            this.endMillis = endMillis;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.skypay.model;
+
+import java.util.Arrays;
+
+// Default hot storage: one primitive array per column. Slot i holds row firstRow + i.
+final class HeapRowStore implements RowStore {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] epochDays;
+    private int[] amounts;
+    private int[] balances;
+    private int firstRow;
+
+    HeapRowStore(int initialCapacity) {
+        this.epochDays = new int[initialCapacity];
+        this.amounts = new int[initialCapacity];
+        this.balances = new int[initialCapacity];
+    }
+
+    @Override
+    public void put(int row, int epochDay, int amount, int balance) {
+        int slot = row - firstRow;
+        if (slot == epochDays.length) {
+            grow(slot + 1);
+        }
+
+        epochDays[slot] = epochDay;
+        amounts[slot] = amount;
+        balances[slot] = balance;
+    }
+
+    @Override
+    public void ensureCapacity(int rowLimit) {
+        if (rowLimit - firstRow > epochDays.length) {
+            grow(rowLimit - firstRow);
+        }
+    }
+
+    @Override
+    public int epochDayAt(int row) {
+        return epochDays[row - firstRow];
+    }
+
+    @Override
+    public int amountAt(int row) {
+        return amounts[row - firstRow];
+    }
+
+    @Override
+    public int balanceAt(int row) {
+        return balances[row - firstRow];
+    }
+
+    // Copies the remaining rows into arrays sized for them, so the old ones can be collected
+    @Override
+    public void discardBefore(int row, int rowLimit) {
+        int moved = row - firstRow;
+        int remaining = rowLimit - row;
+        int capacity = Math.max(MIN_CAPACITY, remaining + (remaining >> 1));
+        epochDays = Arrays.copyOfRange(epochDays, moved, moved + capacity);
+        amounts = Arrays.copyOfRange(amounts, moved, moved + capacity);
+        balances = Arrays.copyOfRange(balances, moved, moved + capacity);
+        firstRow = row;
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return false;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 12L * epochDays.length;
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, epochDays.length + (epochDays.length >> 1) + 1);
+        epochDays = Arrays.copyOf(epochDays, newCapacity);
+        amounts = Arrays.copyOf(amounts, newCapacity);
+        balances = Arrays.copyOf(balances, newCapacity);
+    }
+}
@@ -0,0 +1,334 @@
+package org.skypay.model;
+
+import org.skypay.exception.IdempotencyKeyConflictException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Remembers the outcome of recent keyed operations so a client retry gets the original outcome back instead
+// of applying the operation twice. Each entry also keeps the request it answered (operation, amount, day),
+// so a key reused for a different request is refused instead of being answered with an unrelated outcome.
+// Entries are primitive longs in flat arrays, split into independently locked, linearly probed stripes.
+// A stripe is created on first use with a few slots and doubles as it fills, up to twice its share of the
+// capacity so uneven hashing never forces an eviction early. Nothing is evicted until the whole cache holds
+// capacity entries; then an expired entry is reclaimed if there is one, else the one closest to expiry.
+public class IdempotencyCache {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(24);
+    private static final int STRIPES = 16;
+    private static final int PROBES = 8;
+
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+    // Entries held by all stripes, expired ones included until a stripe reclaims them
+    private final AtomicInteger occupied = new AtomicInteger();
+    private final int capacity;
+    private final int maxSlotsPerStripe;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    public IdempotencyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public IdempotencyCache(int capacity, Duration timeToLive) {
+        this(capacity, timeToLive, Clock.systemUTC());
+    }
+
+    public IdempotencyCache(int capacity, Duration timeToLive, Clock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, received: " + capacity);
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive, received: " + timeToLive);
+        }
+
+        int perStripe = Math.max(PROBES, (capacity + STRIPES - 1) / STRIPES);
+        this.capacity = capacity;
+        // Twice the share at the three-quarters load a stripe is kept to
+        this.maxSlotsPerStripe = Integer.highestOneBit((8 * perStripe + 2) / 3 - 1) << 1;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+    }
+
+    // Returns the outcome remembered for key if it has not expired, otherwise runs action. Only applied
+    // outcomes (see TransactionOutcome) are remembered: a rejected or failed action changed nothing, so its
+    // retry is evaluated again. Callers with the same key are serialized, so an action is applied at most
+    // once per key while it is remembered. Reusing a remembered key with another operation, amount or day
+    // throws IdempotencyKeyConflictException.
+    public long getOrCompute(long key, int operation, int amount, int epochDay, LongSupplier action) {
+        long hash = mix(key);
+        long request = ((long) amount << 32) | (epochDay & 0xFFFFFFFFL);
+        return stripeFor(hash).getOrCompute(key, (int) hash, operation, request, action, clock.millis());
+    }
+
+    // Number of unexpired entries, for monitoring and tests
+    public int size() {
+        long now = clock.millis();
+        int size = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                size += stripe.size(now);
+            }
+        }
+        return size;
+    }
+
+    // Slots currently allocated, live or not, for tests
+    int allocatedSlots() {
+        int slots = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                slots += stripe.slots();
+            }
+        }
+        return slots;
+    }
+
+    private Stripe stripeFor(long hash) {
+        int index = (int) (hash >>> 60);
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    // Takes one unit of capacity for a new entry, or returns false when the cache is full
+    private boolean reserve() {
+        int current;
+        do {
+            current = occupied.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!occupied.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // Murmur3 finalizer: sequential keys spread over stripes and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private final class Stripe {
+
+        // Interleaved (key, expiresAt, outcome, request, operation) entries, so an entry's fields are read
+        // from one or two cache lines. expiresAt == 0 marks a slot that was never used.
+        private static final int WIDTH = 5;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] entries = new long[PROBES * WIDTH];
+        private int mask = PROBES - 1;
+        // Slots holding an entry, live or expired. Kept to at most three quarters of the slots, so a probe
+        // always ends at a never-used slot.
+        private int used;
+        // No entry expires earlier, so reclaiming is skipped until it could free something
+        private long earliestExpiry = Long.MAX_VALUE;
+
+        long getOrCompute(long key, int hash, int operation, long request, LongSupplier action, long now) {
+            lock.lock();
+            try {
+                for (int probe = 0; probe <= mask; probe++) {
+                    int base = ((hash + probe) & mask) * WIDTH;
+                    long expiresAt = entries[base + 1];
+
+                    // Entries only leave in a rehash, so the key cannot sit past a never-used slot
+                    if (expiresAt == 0) {
+                        break;
+                    }
+                    if (entries[base] == key && expiresAt > now) {
+                        if (entries[base + 3] != request || entries[base + 4] != operation) {
+                            throw new IdempotencyKeyConflictException(
+                                "Idempotency key " + key + " was already used for a different request");
+                        }
+                        return entries[base + 2];
+                    }
+                }
+
+                long outcome = action.getAsLong();
+                if (!TransactionOutcome.isApplied(outcome)) {
+                    return outcome;
+                }
+
+                int base = slotFor(hash, now);
+                long expiresAt = Math.max(1, now + timeToLiveMillis);
+                entries[base] = key;
+                entries[base + 1] = expiresAt;
+                entries[base + 2] = outcome;
+                entries[base + 3] = request;
+                entries[base + 4] = operation;
+                earliestExpiry = Math.min(earliestExpiry, expiresAt);
+                return outcome;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size(long now) {
+            lock.lock();
+            try {
+                int size = 0;
+                for (int base = 0; base < entries.length; base += WIDTH) {
+                    if (entries[base + 1] > now) {
+                        size++;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int slots() {
+            lock.lock();
+            try {
+                return mask + 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // An expired slot on the key's probe path if there is one, otherwise a never-used slot while the
+        // cache is below capacity, growing the stripe first if it is getting full. At capacity, after
+        // reclaiming this stripe's expired entries, the live entry closest to expiry is replaced.
+        private int slotFor(int hash, long now) {
+            int expired = firstOnPath(hash, now);
+            if (expired >= 0) {
+                return expired;
+            }
+
+            if (!reserve() && !(reclaim(now) && reserve()) && !(reclaimOthers(now) && reserve())) {
+                return evict(hash, now);
+            }
+            if (4 * (used + 1) > 3 * (mask + 1)) {
+                if (mask + 1 < maxSlotsPerStripe) {
+                    rehash((mask + 1) * 2, now);
+                } else if (!reclaim(now)) {
+                    // Twice its share and still full: this stripe evicts even though others have room
+                    occupied.decrementAndGet();
+                    return evict(hash, now);
+                }
+            }
+
+            used++;
+            return firstOnPath(hash, Long.MIN_VALUE);
+        }
+
+        // First slot on hash's probe path that is expired at now, or never used; -1 if there is none.
+        // With now == Long.MIN_VALUE nothing counts as expired, so this finds the never-used slot.
+        private int firstOnPath(int hash, long now) {
+            for (int probe = 0; probe <= mask; probe++) {
+                int base = ((hash + probe) & mask) * WIDTH;
+                long expiresAt = entries[base + 1];
+                if (expiresAt == 0) {
+                    return now == Long.MIN_VALUE ? base : -1;
+                }
+                if (expiresAt <= now) {
+                    return base;
+                }
+            }
+            return -1;
+        }
+
+        // Replaces the entry closest to expiry among the first ones on hash's probe path. When the path starts
+        // at a never-used slot, the stripe's entry closest to expiry is dropped instead and the new one takes
+        // the never-used slot, so every entry stays reachable from the start of its path.
+        private int evict(int hash, long now) {
+            int victim = -1;
+            long victimExpiry = Long.MAX_VALUE;
+            for (int probe = 0; probe < PROBES && probe <= mask; probe++) {
+                int base = ((hash + probe) & mask) * WIDTH;
+                long expiresAt = entries[base + 1];
+                if (expiresAt == 0) {
+                    break;
+                }
+                if (expiresAt < victimExpiry) {
+                    victim = base;
+                    victimExpiry = expiresAt;
+                }
+            }
+            if (victim >= 0) {
+                return victim;
+            }
+
+            for (int base = 0; base < entries.length; base += WIDTH) {
+                long expiresAt = entries[base + 1];
+                if (expiresAt != 0 && expiresAt < victimExpiry) {
+                    victim = base;
+                    victimExpiry = expiresAt;
+                }
+            }
+            if (victim >= 0) {
+                // Marked expired, so the rehash drops it with any other expired entry
+                entries[victim + 1] = 1;
+                rehash(mask + 1, now);
+            }
+            // Without a victim the stripe is empty and holds one entry over the cache's capacity
+            occupied.incrementAndGet();
+            used++;
+            return firstOnPath(hash, Long.MIN_VALUE);
+        }
+
+        // Drops this stripe's expired entries, returning whether any were dropped
+        private boolean reclaim(long now) {
+            if (now < earliestExpiry) {
+                return false;
+            }
+            int before = used;
+            rehash(mask + 1, now);
+            return used < before;
+        }
+
+        // Drops expired entries from the other stripes that are not busy. Only tryLock is used, so two full
+        // stripes reclaiming from each other cannot deadlock.
+        private boolean reclaimOthers(long now) {
+            boolean reclaimed = false;
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe other = stripes.get(i);
+                if (other != null && other != this && other.lock.tryLock()) {
+                    try {
+                        reclaimed |= other.reclaim(now);
+                    } finally {
+                        other.lock.unlock();
+                    }
+                }
+            }
+            return reclaimed;
+        }
+
+        // Re-places the unexpired entries in a table of the given size, each in the first never-used slot of
+        // its probe path, so no live entry is ever overwritten
+        private void rehash(int slots, long now) {
+            long[] old = entries;
+            entries = new long[slots * WIDTH];
+            mask = slots - 1;
+            int survivors = 0;
+            earliestExpiry = Long.MAX_VALUE;
+
+            for (int base = 0; base < old.length; base += WIDTH) {
+                long expiresAt = old[base + 1];
+                if (expiresAt > now) {
+                    System.arraycopy(old, base, entries, firstOnPath((int) mix(old[base]), Long.MIN_VALUE), WIDTH);
+                    earliestExpiry = Math.min(earliestExpiry, expiresAt);
+                    survivors++;
+                }
+            }
+
+            occupied.addAndGet(survivors - used);
+            used = survivors;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.skypay.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Per-month totals kept up to date as transactions are appended, so summaries cost O(months) instead of
+// a walk over the whole history. Months are sorted columns keyed by year * 12 + month - 1. The month of
+// the last append is remembered as an epoch-day range, so consecutive appends skip the date arithmetic.
+final class MonthlyRollups {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] months = new int[INITIAL_CAPACITY];
+    private long[] deposits = new long[INITIAL_CAPACITY];
+    private long[] withdrawals = new long[INITIAL_CAPACITY];
+    private int[] closingBalances = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Month of the last append: its row and its epoch days [cachedStartDay, cachedEndDay)
+    private int cachedIndex = -1;
+    private int cachedStartDay;
+    private int cachedEndDay;
+
+    void record(int epochDay, int amount, int balance) {
+        int index = cachedIndex;
+        if (index < 0 || epochDay < cachedStartDay || epochDay >= cachedEndDay) {
+            index = locate(epochDay);
+        }
+
+        if (amount > 0) {
+            deposits[index] += amount;
+        } else {
+            withdrawals[index] -= amount;
+        }
+        closingBalances[index] = balance;
+        counts[index]++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Months with transactions between from and to, both inclusive, oldest first
+    List<MonthlySummary> between(YearMonth from, YearMonth to) {
+        int fromIndex = search(key(from));
+        int toIndex = search(key(to) + 1);
+        List<MonthlySummary> summaries = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+        for (int i = fromIndex; i < toIndex; i++) {
+            summaries.add(summaryAt(i));
+        }
+        return summaries;
+    }
+
+    List<MonthlySummary> all() {
+        List<MonthlySummary> summaries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            summaries.add(summaryAt(i));
+        }
+        return summaries;
+    }
+
+    private MonthlySummary summaryAt(int index) {
+        int month = months[index];
+        return new MonthlySummary(YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1),
+            deposits[index], withdrawals[index], closingBalances[index], counts[index]);
+    }
+
+    // Finds the row of epochDay's month, inserting an empty one in order if it is new
+    private int locate(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int month = key(YearMonth.from(date));
+        int index = search(month);
+
+        if (index == size || months[index] != month) {
+            insertAt(index, month);
+        }
+
+        cachedIndex = index;
+        cachedStartDay = epochDay - (date.getDayOfMonth() - 1);
+        cachedEndDay = cachedStartDay + date.lengthOfMonth();
+        return index;
+    }
+
+    private void insertAt(int index, int month) {
+        if (size == months.length) {
+            int capacity = size * 2;
+            months = Arrays.copyOf(months, capacity);
+            deposits = Arrays.copyOf(deposits, capacity);
+            withdrawals = Arrays.copyOf(withdrawals, capacity);
+            closingBalances = Arrays.copyOf(closingBalances, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        // Only back-dated transactions open a month before the last one, so this shift is rare
+        int moved = size - index;
+        System.arraycopy(months, index, months, index + 1, moved);
+        System.arraycopy(deposits, index, deposits, index + 1, moved);
+        System.arraycopy(withdrawals, index, withdrawals, index + 1, moved);
+        System.arraycopy(closingBalances, index, closingBalances, index + 1, moved);
+        System.arraycopy(counts, index, counts, index + 1, moved);
+
+        months[index] = month;
+        deposits[index] = 0;
+        withdrawals[index] = 0;
+        closingBalances[index] = 0;
+        counts[index] = 0;
+        size++;
+    }
+
+    // First row whose month is at least month
+    private int search(int month) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (months[mid] < month) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int key(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,47 @@
+package org.skypay.model;
+
+import java.time.YearMonth;
+
+// Totals of one calendar month that has transactions. Withdrawals are reported as a positive total.
+public class MonthlySummary {
+
+    private final YearMonth month;
+    private final long deposits;
+    private final long withdrawals;
+    private final int closingBalance;
+    private final int transactionCount;
+
+    public MonthlySummary(YearMonth month, long deposits, long withdrawals, int closingBalance, int transactionCount) {
+        this.month = month;
+        this.deposits = deposits;
+        this.withdrawals = withdrawals;
+        this.closingBalance = closingBalance;
+        this.transactionCount = transactionCount;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public long getDeposits() {
+        return deposits;
+    }
+
+    public long getWithdrawals() {
+        return withdrawals;
+    }
+
+    // Balance after the last transaction recorded for this month
+    public int getClosingBalance() {
+        return closingBalance;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    @Override
+    public String toString() {
+        return month + ": +" + deposits + " -" + withdrawals + " closing " + closingBalance + " (" + transactionCount + " transactions)";
+    }
+}
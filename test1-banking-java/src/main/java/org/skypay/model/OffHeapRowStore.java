@@ -0,0 +1,116 @@
+package org.skypay.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Hot storage outside the Java heap: fixed-width 12-byte records (epoch day, amount, balance) in direct
+// ByteBuffer slabs of SLAB_ROWS rows. The heap only holds one small buffer object per slab, so history
+// size does not drive heap size or GC pause times. The first slab starts at FIRST_SLAB_ROWS and doubles,
+// copying, until it is full size, so a short history costs a few hundred bytes of native memory; later
+// slabs are allocated full size and never copied, at most doubling a history that already fills one.
+final class OffHeapRowStore implements RowStore {
+
+    static final int RECORD_SIZE = 12;
+    private static final int SLAB_SHIFT = 16;
+    static final int SLAB_ROWS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK = SLAB_ROWS - 1;
+    static final int FIRST_SLAB_ROWS = 16;
+
+    private ByteBuffer[] slabs = new ByteBuffer[4];
+    private int slabCount;
+    // Slabs below this one were released by discardBefore
+    private int firstSlab;
+
+    @Override
+    public void put(int row, int epochDay, int amount, int balance) {
+        int slab = row >>> SLAB_SHIFT;
+        if (slab == slabCount) {
+            addSlab();
+        }
+
+        ByteBuffer buffer = slabs[slab];
+        int offset = (row & SLAB_MASK) * RECORD_SIZE;
+        if (offset >= buffer.capacity()) {
+            buffer = growSlab(slab, offset + RECORD_SIZE);
+        }
+        buffer.putInt(offset, epochDay);
+        buffer.putInt(offset + 4, amount);
+        buffer.putInt(offset + 8, balance);
+    }
+
+    @Override
+    public void ensureCapacity(int rowLimit) {
+        int slabsNeeded = (int) (((long) rowLimit + SLAB_MASK) >>> SLAB_SHIFT);
+        while (slabCount < slabsNeeded) {
+            addSlab();
+        }
+        if (slabsNeeded > 0 && slabs[0] != null && slabs[0].capacity() < SLAB_ROWS * RECORD_SIZE) {
+            growSlab(0, Math.min(rowLimit, SLAB_ROWS) * RECORD_SIZE);
+        }
+    }
+
+    @Override
+    public int epochDayAt(int row) {
+        return slabs[row >>> SLAB_SHIFT].getInt((row & SLAB_MASK) * RECORD_SIZE);
+    }
+
+    @Override
+    public int amountAt(int row) {
+        return slabs[row >>> SLAB_SHIFT].getInt((row & SLAB_MASK) * RECORD_SIZE + 4);
+    }
+
+    @Override
+    public int balanceAt(int row) {
+        return slabs[row >>> SLAB_SHIFT].getInt((row & SLAB_MASK) * RECORD_SIZE + 8);
+    }
+
+    // Drops the slabs that hold only discarded rows; their native memory is freed once the buffers are collected
+    @Override
+    public void discardBefore(int row, int rowLimit) {
+        int slab = row >>> SLAB_SHIFT;
+        for (int i = firstSlab; i < slab; i++) {
+            slabs[i] = null;
+        }
+        firstSlab = Math.max(firstSlab, slab);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (int i = firstSlab; i < slabCount; i++) {
+            bytes += slabs[i].capacity();
+        }
+        return bytes;
+    }
+
+    private void addSlab() {
+        if (slabCount == slabs.length) {
+            slabs = Arrays.copyOf(slabs, slabCount * 2);
+        }
+        slabs[slabCount] = allocate(slabCount == 0 ? FIRST_SLAB_ROWS * RECORD_SIZE : SLAB_ROWS * RECORD_SIZE);
+        slabCount++;
+    }
+
+    private ByteBuffer growSlab(int slab, int minBytes) {
+        ByteBuffer old = slabs[slab];
+        if (old.capacity() >= minBytes) {
+            return old;
+        }
+
+        ByteBuffer grown = allocate(Math.min(SLAB_ROWS * RECORD_SIZE, Math.max(minBytes, old.capacity() * 2)));
+        grown.put(0, old, 0, old.capacity());
+        slabs[slab] = grown;
+        return grown;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        // Native order: plain loads and stores, no byte swapping
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,25 @@
+package org.skypay.model;
+
+// Storage behind the hot rows of a TransactionLog. Rows are addressed by their index in the log and
+// appended in order; rows before the last discardBefore() are no longer readable.
+interface RowStore {
+
+    // row is always the index after the last row stored
+    void put(int row, int epochDay, int amount, int balance);
+
+    // Makes room for rows up to, but not including, rowLimit without further allocation
+    void ensureCapacity(int rowLimit);
+
+    int epochDayAt(int row);
+
+    int amountAt(int row);
+
+    int balanceAt(int row);
+
+    // Releases the storage of rows [0, row), which the log has moved to its cold tier
+    void discardBefore(int row, int rowLimit);
+
+    boolean isOffHeap();
+
+    long sizeInBytes();
+}
@@ -4,18 +4,27 @@ import java.time.LocalDate;
 
 public class Transaction {
     
-    private final LocalDate date;
+    // Days since 1970-01-01; a LocalDate is only built when a caller asks for one
+    private final int epochDay;
     private final int amount;
     private final int balance;
     
     public Transaction(LocalDate date, int amount, int balance) {
-        this.date = date;
+        this(Math.toIntExact(date.toEpochDay()), amount, balance);
+    }
+    
+    public Transaction(int epochDay, int amount, int balance) {
+        this.epochDay = epochDay;
         this.amount = amount;
         this.balance = balance;
     }
     
     public LocalDate getDate() {
-        return date;
+        return LocalDate.ofEpochDay(epochDay);
+    }
+    
+    public int getEpochDay() {
+        return epochDay;
     }
     
     public int getAmount() {
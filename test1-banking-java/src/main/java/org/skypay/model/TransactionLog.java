@@ -0,0 +1,247 @@
+package org.skypay.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Column-oriented transaction history: one primitive array per field instead of one object per row,
+// or fixed-width records in off-heap slabs for very large ledgers (see offHeap). Old rows can be moved
+// to a cold tier of compressed segments (see compactBefore); hot storage then holds only the rows after
+// them, and a cold segment is decoded when a read reaches into it. Rows are read by index either way.
+public class TransactionLog {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Sparse index granularity: one sampled date per 64 rows
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    // Hot rows only: rows [coldSize, size)
+    private final RowStore hot;
+    private int size;
+    private int lastEpochDay;
+    // Date of every BLOCK_SIZE-th row, small enough to stay in cache while a search narrows down the block
+    private int[] blockStartDays;
+    // True while every row is dated on or after the previous one, which is what range searches rely on
+    private boolean chronological;
+
+    // Cold tier: rows [0, coldSize) in ColdSegment.ROWS-row segments, with the last one read kept decoded
+    private ColdSegment[] coldSegments;
+    private int coldSize;
+    private int decodedSegment;
+    private int[] decodedDays;
+    private int[] decodedAmounts;
+    private int[] decodedBalances;
+
+    public TransactionLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionLog(int initialCapacity) {
+        this(newHeapStore(initialCapacity), initialCapacity);
+    }
+
+    private TransactionLog(RowStore hot, int initialCapacity) {
+        this.hot = hot;
+        this.size = 0;
+        this.blockStartDays = new int[(initialCapacity >> BLOCK_SHIFT) + 1];
+        this.chronological = true;
+        this.coldSegments = new ColdSegment[0];
+        this.coldSize = 0;
+        this.decodedSegment = -1;
+    }
+
+    // Log whose hot rows live outside the Java heap, in direct buffers of 64Ki 12-byte records each.
+    // Reads and appends cost about the same as on heap, but history size no longer weighs on the GC.
+    public static TransactionLog offHeap() {
+        return new TransactionLog(new OffHeapRowStore(), DEFAULT_CAPACITY);
+    }
+
+    public void append(LocalDate date, int amount, int balance) {
+        append(Math.toIntExact(date.toEpochDay()), amount, balance);
+    }
+
+    public void append(int epochDay, int amount, int balance) {
+        if (size > 0 && epochDay < lastEpochDay) {
+            chronological = false;
+        }
+
+        if ((size & (BLOCK_SIZE - 1)) == 0) {
+            indexBlockStart(size >> BLOCK_SHIFT, epochDay);
+        }
+
+        hot.put(size, epochDay, amount, balance);
+        lastEpochDay = epochDay;
+        size++;
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        hot.ensureCapacity(minCapacity);
+    }
+
+    // Moves every whole segment of rows before index into the cold tier, shrinking hot storage to
+    // what remains. Cold rows keep their indexes and stay readable, at the cost of decoding on access.
+    public void compactBefore(int index) {
+        Objects.checkIndex(index, size + 1);
+        int targetColdSize = index - index % ColdSegment.ROWS;
+        if (targetColdSize <= coldSize) {
+            return;
+        }
+
+        int newSegments = (targetColdSize - coldSize) / ColdSegment.ROWS;
+        ColdSegment[] segments = Arrays.copyOf(coldSegments, coldSegments.length + newSegments);
+        for (int i = 0; i < newSegments; i++) {
+            segments[coldSegments.length + i] = ColdSegment.encode(hot, coldSize + i * ColdSegment.ROWS);
+        }
+
+        hot.discardBefore(targetColdSize, size);
+        coldSegments = segments;
+        coldSize = targetColdSize;
+    }
+
+    // Rows held in compressed cold segments, always a prefix of the log
+    public int coldSize() {
+        return coldSize;
+    }
+
+    // Bytes used by the encoded cold rows, against 12 per row in hot storage
+    public long coldBytes() {
+        long bytes = 0;
+        for (ColdSegment segment : coldSegments) {
+            bytes += segment.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return hot.isOffHeap();
+    }
+
+    // Bytes reserved for hot rows, on or off heap
+    public long hotBytes() {
+        return hot.sizeInBytes();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isChronological() {
+        return chronological;
+    }
+
+    // Index of the first row dated on or after epochDay, or size() if there is none. Requires a chronological log.
+    public int firstIndexOnOrAfter(int epochDay) {
+        requireChronological();
+        return searchFirstAfter(epochDay - 1L);
+    }
+
+    // Index of the first row dated strictly after epochDay, or size() if there is none. Requires a chronological log.
+    public int firstIndexAfter(int epochDay) {
+        requireChronological();
+        return searchFirstAfter(epochDay);
+    }
+
+    public int epochDayAt(int index) {
+        Objects.checkIndex(index, size);
+        if (index >= coldSize) {
+            return hot.epochDayAt(index);
+        }
+        int slot = decode(index);
+        return decodedDays[slot];
+    }
+
+    public LocalDate dateAt(int index) {
+        return LocalDate.ofEpochDay(epochDayAt(index));
+    }
+
+    public int amountAt(int index) {
+        Objects.checkIndex(index, size);
+        if (index >= coldSize) {
+            return hot.amountAt(index);
+        }
+        int slot = decode(index);
+        return decodedAmounts[slot];
+    }
+
+    public int balanceAt(int index) {
+        Objects.checkIndex(index, size);
+        if (index >= coldSize) {
+            return hot.balanceAt(index);
+        }
+        int slot = decode(index);
+        return decodedBalances[slot];
+    }
+
+    public Transaction get(int index) {
+        return new Transaction(epochDayAt(index), amountAt(index), balanceAt(index));
+    }
+
+    private int searchFirstAfter(long epochDay) {
+        // First narrow down to one block through the sparse index, then search inside it
+        int lowBlock = 0;
+        int highBlock = (size + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        while (lowBlock < highBlock) {
+            int middle = (lowBlock + highBlock) >>> 1;
+            if (blockStartDays[middle] <= epochDay) {
+                lowBlock = middle + 1;
+            } else {
+                highBlock = middle;
+            }
+        }
+
+        // Every block before lowBlock starts on or before epochDay, every block from lowBlock starts after it
+        if (lowBlock == 0) {
+            return 0;
+        }
+        int low = (lowBlock - 1) << BLOCK_SHIFT;
+        int high = Math.min(size, lowBlock << BLOCK_SHIFT);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDayAt(middle) <= epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Makes sure the segment holding cold row index is the decoded one and returns the row's slot in it
+    private int decode(int index) {
+        int segment = index / ColdSegment.ROWS;
+        if (segment != decodedSegment) {
+            if (decodedDays == null) {
+                decodedDays = new int[ColdSegment.ROWS];
+                decodedAmounts = new int[ColdSegment.ROWS];
+                decodedBalances = new int[ColdSegment.ROWS];
+            }
+            coldSegments[segment].decode(decodedDays, decodedAmounts, decodedBalances);
+            decodedSegment = segment;
+        }
+        return index % ColdSegment.ROWS;
+    }
+
+    private void indexBlockStart(int block, int epochDay) {
+        if (block == blockStartDays.length) {
+            blockStartDays = Arrays.copyOf(blockStartDays, block + (block >> 1) + 1);
+        }
+        blockStartDays[block] = epochDay;
+    }
+
+    private void requireChronological() {
+        if (!chronological) {
+            throw new IllegalStateException("Transaction log is not in date order");
+        }
+    }
+
+    private static RowStore newHeapStore(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative, received: " + initialCapacity);
+        }
+        return new HeapRowStore(initialCapacity);
+    }
+}
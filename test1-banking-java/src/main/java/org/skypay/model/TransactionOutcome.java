@@ -0,0 +1,29 @@
+package org.skypay.model;
+
+// Result codes for operations that report failures as values instead of exceptions
+public final class TransactionOutcome {
+    
+    public static final int APPLIED = 0;
+    public static final int INVALID_AMOUNT = 1;
+    public static final int INSUFFICIENT_BALANCE = 2;
+    
+    private TransactionOutcome() {
+    }
+    
+    // Single-operation results pack the code (high 32 bits) and the balance afterwards (low 32 bits) into a long
+    public static int code(long result) {
+        return (int) (result >>> 32);
+    }
+    
+    public static int balance(long result) {
+        return (int) result;
+    }
+    
+    public static boolean isApplied(long result) {
+        return code(result) == APPLIED;
+    }
+    
+    static long of(int code, int balance) {
+        return ((long) code << 32) | (balance & 0xFFFFFFFFL);
+    }
+}
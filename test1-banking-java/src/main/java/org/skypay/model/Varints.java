@@ -0,0 +1,132 @@
+package org.skypay.model;
+
+// LEB128 varints with zigzag encoding for signed values, shared by the cold tier and AccountCodec:
+// small magnitudes of either sign take one byte.
+final class Varints {
+
+    // Longest encoding of a 64-bit value
+    static final int MAX_LENGTH = 10;
+    // Longest encoding of a putRow row
+    static final int MAX_ROW_LENGTH = 3 * MAX_LENGTH;
+
+    private Varints() {
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int putVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    // One transaction row relative to the row before it, as stored by the cold tier and account snapshots:
+    // a header varint carrying the day delta and a flag for a balance that does not follow from the previous
+    // balance plus the amount, then the amount, then that balance's residual if flagged
+    static int putRow(byte[] buffer, int position, int previousDay, int previousBalance,
+                      int epochDay, int amount, int balance) {
+        long dayDelta = (long) epochDay - previousDay;
+        int residual = balance - (previousBalance + amount);
+
+        position = putVarLong(buffer, position, zigZag(dayDelta) << 1 | (residual != 0 ? 1 : 0));
+        position = putVarLong(buffer, position, zigZag(amount));
+        if (residual != 0) {
+            position = putVarLong(buffer, position, zigZag(residual));
+        }
+        return position;
+    }
+
+    static final class Reader {
+
+        private final byte[] data;
+        private int position;
+        private final int limit;
+
+        Reader(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        Reader(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        long nextVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == limit || shift >= 64) {
+                    throw new IllegalArgumentException("Truncated or malformed varint at byte " + position);
+                }
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        int nextInt() {
+            long value = unZigZag(nextVarLong());
+            if (value != (int) value) {
+                throw new IllegalArgumentException("Value " + value + " does not fit in an int");
+            }
+            return (int) value;
+        }
+
+        int position() {
+            return position;
+        }
+    }
+
+    // Reads back rows written by putRow, tracking the day and balance each one is relative to
+    static final class RowReader {
+
+        private final Reader reader;
+        private int day;
+        private int amount;
+        private int balance;
+
+        // day and balance are those "before" the first row
+        RowReader(Reader reader, int day, int balance) {
+            this.reader = reader;
+            this.day = day;
+            this.balance = balance;
+        }
+
+        void next() {
+            long header = reader.nextVarLong();
+            amount = reader.nextInt();
+            int residual = (header & 1) != 0 ? reader.nextInt() : 0;
+
+            long nextDay = day + unZigZag(header >>> 1);
+            if (nextDay != (int) nextDay) {
+                throw new IllegalArgumentException("Epoch day " + nextDay + " does not fit in an int");
+            }
+            day = (int) nextDay;
+            balance = balance + amount + residual;
+        }
+
+        int day() {
+            return day;
+        }
+
+        int amount() {
+            return amount;
+        }
+
+        int balance() {
+            return balance;
+        }
+    }
+}
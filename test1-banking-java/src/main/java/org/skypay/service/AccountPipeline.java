@@ -0,0 +1,318 @@
+package org.skypay.service;
+
+import org.skypay.journal.AccountJournal;
+import org.skypay.journal.WriteAheadLog;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-writer alternative to ConcurrentAccount. Producers enqueue deposit/withdraw commands into the
+// ring buffer of the shard owning the account; one writer thread per shard drains them in order against
+// plain Accounts, so balances and histories are never shared and nothing retries a CAS. With a
+// WriteAheadLog, each drained batch is synced once before its results are published to the listener.
+public class AccountPipeline implements AutoCloseable {
+
+    private static final byte SKIP = 0;
+    private static final byte DEPOSIT = 1;
+    private static final byte WITHDRAW = 2;
+
+    // Writer spins this many empty polls before parking until a producer wakes it
+    private static final int IDLE_SPINS = 1 << 10;
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    public AccountPipeline(int shardCount, int ringCapacity, ResultListener listener) {
+        this(shardCount, ringCapacity, null, listener);
+    }
+
+    // Accounts journal into log, which must not be written by anything else while the pipeline runs.
+    // The log must be empty; to continue an existing one, pass the ledger replayed from it.
+    public AccountPipeline(int shardCount, int ringCapacity, WriteAheadLog log, ResultListener listener) {
+        this(shardCount, ringCapacity, log, null, listener);
+    }
+
+    // Accounts continue from the balances in recovered, which ReplayEngine rebuilt from this same log
+    public AccountPipeline(int shardCount, int ringCapacity, WriteAheadLog log, ReplayEngine.Ledger recovered,
+                           ResultListener listener) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive, received: " + shardCount);
+        }
+        if (ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a positive power of two, received: " + ringCapacity);
+        }
+        // New rows must continue the balances already in the log, or replaying it would fail verification
+        long recoveredTransactions = recovered == null ? 0 : recovered.getTransactions();
+        if (log != null && log.getDurableSequence() != recoveredTransactions) {
+            throw new IllegalArgumentException("Write-ahead log holds " + log.getDurableSequence()
+                + " records but the recovered ledger covers " + recoveredTransactions);
+        }
+
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(ringCapacity, log, recovered, listener);
+        }
+        for (int i = 0; i < shardCount; i++) {
+            Thread writer = new Thread(shards[i], "account-pipeline-" + i);
+            writer.setDaemon(true);
+            shards[i].writer = writer;
+            writer.start();
+        }
+    }
+
+    // Enqueues a deposit, blocking while the shard's ring is full. tag is handed back with the result.
+    public void deposit(long accountId, int amount, LocalDate date, long tag) {
+        submit(DEPOSIT, accountId, amount, date, tag);
+    }
+
+    public void withdraw(long accountId, int amount, LocalDate date, long tag) {
+        submit(WITHDRAW, accountId, amount, date, tag);
+    }
+
+    // Stops accepting commands, lets the writers finish everything already enqueued and waits for them.
+    // If the caller is interrupted it stops waiting and keeps its interrupt status; the writers still drain.
+    @Override
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.writer);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            if (shard.failure != null) {
+                throw new IllegalStateException("Account pipeline writer failed", shard.failure);
+            }
+        }
+    }
+
+    private void submit(byte kind, long accountId, int amount, LocalDate date, long tag) {
+        // Checked here, before a sequence is claimed: a bad argument must fail its caller, not the shard's writer
+        Objects.requireNonNull(date, "date");
+
+        int hash = AccountRegistry.hash(accountId);
+        // High hash bits pick the shard, as they pick the stripe in AccountRegistry, leaving the low bits
+        // that place accounts in each shard's map uncorrelated with the shard
+        Shard shard = shards[(int) (((hash & 0xFFFFFFFFL) * shards.length) >>> 32)];
+        if (shard.failure != null) {
+            throw new IllegalStateException("Account pipeline writer failed", shard.failure);
+        }
+
+        long sequence = shard.claimed.getAndIncrement();
+        shard.awaitFreeSlot(sequence);
+
+        // Checked after claiming, so either the writer sees this sequence and waits for it, or we see the shutdown
+        boolean accepted = running;
+        int slot = (int) sequence & shard.mask;
+        shard.kinds[slot] = accepted ? kind : SKIP;
+        shard.accountIds[slot] = accountId;
+        shard.amounts[slot] = amount;
+        shard.dates[slot] = date;
+        shard.tags[slot] = tag;
+        // Volatile, not just release: it must be ordered before the read of sleeping below
+        PUBLISHED.setVolatile(shard.published, slot, sequence);
+
+        if (shard.sleeping) {
+            LockSupport.unpark(shard.writer);
+        }
+        if (!accepted) {
+            throw new IllegalStateException("Account pipeline is closed");
+        }
+    }
+
+    public interface ResultListener {
+        // Called on the shard's writer thread, in submission order per shard; result is a TransactionOutcome pair
+        void onResult(long accountId, long tag, long result);
+    }
+
+    private final class Shard implements Runnable {
+
+        private final int capacity;
+        private final int mask;
+        private final WriteAheadLog log;
+        private final ReplayEngine.Ledger recovered;
+        private final ResultListener listener;
+
+        // Ring slots, one array per field; published[slot] holds the sequence last written there
+        private final byte[] kinds;
+        private final long[] accountIds;
+        private final int[] amounts;
+        private final LocalDate[] dates;
+        private final long[] tags;
+        private final long[] results;
+        private final long[] published;
+
+        private final AtomicLong claimed = new AtomicLong();
+        // Every sequence below this has been applied and reported, so its slot may be reused
+        private volatile long consumed;
+        private volatile boolean sleeping;
+        private volatile Throwable failure;
+        private Thread writer;
+
+        // Writer-thread state
+        private final LongAccountMap<Account> accounts = new LongAccountMap<>();
+        private long lastAppended;
+
+        Shard(int capacity, WriteAheadLog log, ReplayEngine.Ledger recovered, ResultListener listener) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.log = log;
+            this.recovered = recovered;
+            this.listener = listener;
+            this.kinds = new byte[capacity];
+            this.accountIds = new long[capacity];
+            this.amounts = new int[capacity];
+            this.dates = new LocalDate[capacity];
+            this.tags = new long[capacity];
+            this.results = new long[capacity];
+            this.published = new long[capacity];
+            Arrays.fill(published, -1);
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        void awaitFreeSlot(long sequence) {
+            int spins = 0;
+            while (sequence - capacity >= consumed) {
+                if (failure != null) {
+                    throw new IllegalStateException("Account pipeline writer failed", failure);
+                }
+                if (++spins < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10_000);
+                }
+            }
+        }
+
+        private void drain() {
+            long next = 0;
+            int idle = 0;
+
+            while (true) {
+                long end = next;
+                while (end - next < capacity && (long) PUBLISHED.getAcquire(published, (int) end & mask) == end) {
+                    end++;
+                }
+
+                if (end == next) {
+                    // Shut down only once every claimed sequence has been drained
+                    if (!running && claimed.get() == next) {
+                        return;
+                    }
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+
+                for (long sequence = next; sequence < end; sequence++) {
+                    apply((int) sequence & mask);
+                }
+
+                // One fsync for the whole batch; nothing is reported before it is durable
+                if (log != null) {
+                    log.sync(lastAppended);
+                }
+                for (long sequence = next; sequence < end; sequence++) {
+                    int slot = (int) sequence & mask;
+                    dates[slot] = null;
+                    if (kinds[slot] != SKIP) {
+                        listener.onResult(accountIds[slot], tags[slot], results[slot]);
+                    }
+                }
+
+                consumed = end;
+                next = end;
+            }
+        }
+
+        private void apply(int slot) {
+            byte kind = kinds[slot];
+            if (kind == SKIP) {
+                return;
+            }
+
+            Account account = accountFor(accountIds[slot]);
+            results[slot] = kind == DEPOSIT
+                ? account.tryDeposit(amounts[slot], dates[slot])
+                : account.tryWithdraw(amounts[slot], dates[slot]);
+        }
+
+        private Account accountFor(long accountId) {
+            int hash = AccountRegistry.hash(accountId);
+            Account account = accounts.get(accountId, hash);
+            if (account == null) {
+                // Only the balance is carried over: results report balances, never the earlier history
+                int openingBalance = recovered != null && recovered.contains(accountId) ? recovered.get(accountId).getBalance() : 0;
+                AccountJournal journal = log == null ? AccountJournal.NONE : new BatchJournal(this, accountId);
+                account = new Account(openingBalance, new TransactionLog(), journal);
+                accounts.put(accountId, hash, account);
+            }
+            return account;
+        }
+
+        private int idle(int idle) {
+            if (idle < IDLE_SPINS) {
+                Thread.onSpinWait();
+                return idle + 1;
+            }
+
+            sleeping = true;
+            // Re-check after announcing, so a producer that published meanwhile is not missed
+            long next = consumed;
+            if ((long) PUBLISHED.getVolatile(published, (int) next & mask) != next && running) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+            return 0;
+        }
+    }
+
+    // Appends to the shared log and leaves the fsync to the end of the shard's batch
+    private static final class BatchJournal implements AccountJournal {
+
+        private final Shard shard;
+        private final long accountId;
+
+        BatchJournal(Shard shard, long accountId) {
+            this.shard = shard;
+            this.accountId = accountId;
+        }
+
+        @Override
+        public void record(int epochDay, int amount, int balance) {
+            shard.lastAppended = shard.log.append(accountId, epochDay, amount, balance);
+        }
+
+        @Override
+        public void commit() {
+            // Deferred: the writer syncs once per batch before any result is published
+        }
+
+        @Override
+        public void abort() {
+            // Only reached when the shared log has failed, and a failed log makes nothing durable
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.skypay.service;
+
+import org.skypay.exception.AccountNotFoundException;
+import org.skypay.model.ConcurrentAccount;
+
+import java.time.LocalDate;
+import java.util.concurrent.locks.StampedLock;
+
+// Ledger of thread-safe accounts keyed by primitive long ids. The id space is split into stripes,
+// each with its own lock and map, so lookups never block each other and writers only contend
+// when they land on the same stripe.
+public class AccountRegistry {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    public AccountRegistry() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountRegistry(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive, received: " + stripeCount);
+        }
+
+        int powerOfTwo = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[powerOfTwo];
+        for (int i = 0; i < powerOfTwo; i++) {
+            stripes[i] = new Stripe();
+        }
+        // Stripe is chosen from the high hash bits, slots inside a stripe from the low ones
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(powerOfTwo);
+    }
+
+    public ConcurrentAccount get(long id) {
+        ConcurrentAccount account = find(id);
+        if (account == null) {
+            throw new AccountNotFoundException("Account with ID " + id + " not found");
+        }
+        return account;
+    }
+
+    public boolean contains(long id) {
+        return find(id) != null;
+    }
+
+    public ConcurrentAccount getOrCreate(long id) {
+        int hash = hash(id);
+        Stripe stripe = stripeFor(hash);
+
+        ConcurrentAccount existing = stripe.find(id, hash);
+        if (existing != null) {
+            return existing;
+        }
+
+        long stamp = stripe.lock.writeLock();
+        try {
+            existing = stripe.accounts.get(id, hash);
+            if (existing != null) {
+                return existing;
+            }
+            ConcurrentAccount created = new ConcurrentAccount();
+            stripe.accounts.put(id, hash, created);
+            return created;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void transfer(long fromId, long toId, int amount) {
+        ConcurrentAccount.transfer(get(fromId), get(toId), amount);
+    }
+
+    // Atomic transfer between two registered accounts, see ConcurrentAccount.transfer
+    public void transfer(long fromId, long toId, int amount, LocalDate date) {
+        ConcurrentAccount.transfer(get(fromId), get(toId), amount, date);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.accounts.size();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // Visits every account, holding one stripe's read lock at a time
+    public void forEach(AccountVisitor visitor) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.accounts.forEach(visitor::visit);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private ConcurrentAccount find(long id) {
+        int hash = hash(id);
+        return stripeFor(hash).find(id, hash);
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes.length == 1 ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    static int hash(long id) {
+        // Murmur3 finalizer: spreads sequential ids over both stripes and slots
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    public interface AccountVisitor {
+        void visit(long id, ConcurrentAccount account);
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final LongAccountMap<ConcurrentAccount> accounts = new LongAccountMap<>();
+
+        ConcurrentAccount find(long id, int hash) {
+            // Optimistic read first: no shared-memory write on the lookup path
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                ConcurrentAccount account = accounts.get(id, hash);
+                if (lock.validate(stamp)) {
+                    return account;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return accounts.get(id, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.skypay.service;
+
+import java.nio.charset.StandardCharsets;
+
+// Hand-rolled ASCII encoding of the numbers and dates that make up statement lines,
+// writing straight into a byte buffer instead of going through String and Formatter
+final class Ascii {
+
+    // Epoch days of 01/01/0001 and 31/12/9999: the range where year and year-of-era agree on four digits
+    static final int MIN_FOUR_DIGIT_YEAR_DAY = -719162;
+    static final int MAX_FOUR_DIGIT_YEAR_DAY = 2932896;
+
+    private static final byte[] MIN_INT = String.valueOf(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private Ascii() {
+    }
+
+    static int lengthOf(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return MIN_INT.length;
+        }
+
+        int length = value < 0 ? 2 : 1;
+        int remaining = Math.abs(value);
+        while (remaining >= 10) {
+            remaining /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    // Writes the decimal form of value at offset and returns the offset just past it
+    static int putInt(byte[] buffer, int offset, int value) {
+        if (value == Integer.MIN_VALUE) {
+            System.arraycopy(MIN_INT, 0, buffer, offset, MIN_INT.length);
+            return offset + MIN_INT.length;
+        }
+
+        int end = offset + lengthOf(value);
+        int position = end;
+        int remaining = Math.abs(value);
+        do {
+            buffer[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (value < 0) {
+            buffer[offset] = '-';
+        }
+        return end;
+    }
+
+    static int putSpaces(byte[] buffer, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            buffer[offset + i] = ' ';
+        }
+        return offset + count;
+    }
+
+    static int putBytes(byte[] buffer, int offset, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+        return offset + bytes.length;
+    }
+
+    static void putTwoDigits(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) ('0' + value / 10);
+        buffer[offset + 1] = (byte) ('0' + value % 10);
+    }
+
+    static void putFourDigits(byte[] buffer, int offset, int value) {
+        putTwoDigits(buffer, offset, value / 100);
+        putTwoDigits(buffer, offset + 2, value % 100);
+    }
+
+    // Proleptic Gregorian civil date for an epoch day, packed as yyyy * 10000 + MM * 100 + dd.
+    // Only valid between MIN_FOUR_DIGIT_YEAR_DAY and MAX_FOUR_DIGIT_YEAR_DAY.
+    static int civilDate(int epochDay) {
+        int shifted = epochDay + 719468;
+        int era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+}
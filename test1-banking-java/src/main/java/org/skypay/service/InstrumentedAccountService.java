@@ -0,0 +1,166 @@
+package org.skypay.service;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decorator measuring every AccountService call: a striped call counter, a latency histogram, and
+// rejection counts by exception type per operation. Recording is two nanoTime reads and a few
+// uncontended increments; snapshot() reads the counters without taking any lock the callers use.
+public class InstrumentedAccountService implements AccountService {
+
+    public enum Operation {
+        DEPOSIT,
+        WITHDRAW,
+        PRINT_STATEMENT
+    }
+
+    private final AccountService delegate;
+    private final OperationMetrics deposits = new OperationMetrics();
+    private final OperationMetrics withdrawals = new OperationMetrics();
+    private final OperationMetrics statements = new OperationMetrics();
+
+    public InstrumentedAccountService(AccountService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void deposite(int amount) {
+        long start = System.nanoTime();
+        try {
+            delegate.deposite(amount);
+        } catch (RuntimeException e) {
+            deposits.reject(e);
+            throw e;
+        } finally {
+            deposits.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void withdraw(int amount) {
+        long start = System.nanoTime();
+        try {
+            delegate.withdraw(amount);
+        } catch (RuntimeException e) {
+            withdrawals.reject(e);
+            throw e;
+        } finally {
+            withdrawals.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void printStatement() {
+        long start = System.nanoTime();
+        try {
+            delegate.printStatement();
+        } catch (RuntimeException e) {
+            statements.reject(e);
+            throw e;
+        } finally {
+            statements.record(System.nanoTime() - start);
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<Operation, OperationSnapshot> operations = new EnumMap<>(Operation.class);
+        operations.put(Operation.DEPOSIT, deposits.snapshot());
+        operations.put(Operation.WITHDRAW, withdrawals.snapshot());
+        operations.put(Operation.PRINT_STATEMENT, statements.snapshot());
+        return new Snapshot(operations);
+    }
+
+    private static final class OperationMetrics {
+
+        final LongAdder calls = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        // Only touched when a call fails; after the first failure of a type it is a lock-free lookup
+        final ConcurrentHashMap<Class<?>, LongAdder> rejections = new ConcurrentHashMap<>();
+
+        void record(long nanos) {
+            calls.increment();
+            latency.record(nanos);
+        }
+
+        void reject(RuntimeException e) {
+            LongAdder counter = rejections.get(e.getClass());
+            if (counter == null) {
+                counter = rejections.computeIfAbsent(e.getClass(), type -> new LongAdder());
+            }
+            counter.increment();
+        }
+
+        OperationSnapshot snapshot() {
+            Map<String, Long> rejected = new TreeMap<>();
+            rejections.forEach((type, counter) -> rejected.put(type.getSimpleName(), counter.sum()));
+            return new OperationSnapshot(calls.sum(), rejected, latency.snapshot());
+        }
+    }
+
+    public static final class OperationSnapshot {
+
+        private final long calls;
+        private final Map<String, Long> rejections;
+        private final LatencyHistogram.Snapshot latency;
+
+        OperationSnapshot(long calls, Map<String, Long> rejections, LatencyHistogram.Snapshot latency) {
+            this.calls = calls;
+            this.rejections = Collections.unmodifiableMap(rejections);
+            this.latency = latency;
+        }
+
+        // Every call, rejected or not
+        public long getCalls() {
+            return calls;
+        }
+
+        // Rejected calls by exception simple name, e.g. "InsufficientBalanceException"
+        public Map<String, Long> getRejections() {
+            return rejections;
+        }
+
+        public long getRejectedCalls() {
+            long total = 0;
+            for (long count : rejections.values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + calls + " rejected=" + rejections + " latency " + latency;
+        }
+    }
+
+    public static final class Snapshot {
+
+        private final Map<Operation, OperationSnapshot> operations;
+
+        Snapshot(Map<Operation, OperationSnapshot> operations) {
+            this.operations = operations;
+        }
+
+        public OperationSnapshot get(Operation operation) {
+            return operations.get(operation);
+        }
+
+        // One line per operation
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            operations.forEach((operation, snapshot) ->
+                out.append(operation.name().toLowerCase(Locale.ROOT)).append(' ').append(snapshot).append(System.lineSeparator()));
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.skypay.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Log-linear latency histogram in the style of HdrHistogram: values below SUB_BUCKETS are counted
+// exactly, larger ones in buckets whose width is 1/HALF of their magnitude, so every recorded value is
+// within about 3% of its bucket's lower bound from 1 ns up to MAX_TRACKABLE. Counts are spread over
+// stripes picked by thread id, so concurrent recorders rarely touch the same cache line, and reading a
+// snapshot only sums the stripes: it never blocks a recorder.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS >> 1;
+    // About 18 minutes in nanoseconds; anything slower is counted in the last bucket
+    static final long MAX_TRACKABLE = (1L << 40) - 1;
+    private static final int BUCKETS = bucketOf(MAX_TRACKABLE) + 1;
+    private static final int STRIPES = 8;
+
+    private final AtomicLongArray[] stripes;
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        this.stripes = new AtomicLongArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE));
+        int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+        stripes[stripe].getAndIncrement(bucketOf(value));
+        max.accumulate(value);
+    }
+
+    // Recorders may run concurrently, so the snapshot can include part of the records made while it was taken
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return new Snapshot(counts, max.get());
+    }
+
+    // Exact below SUB_BUCKETS; above, the exponent picks a row of HALF buckets and the top bits pick one in it
+    static int bucketOf(long value) {
+        int exponent = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return exponent * HALF + (int) (value >>> exponent);
+    }
+
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / HALF - 1;
+        return (long) (bucket - exponent * HALF) << exponent;
+    }
+
+    static long highestValueOf(int bucket) {
+        return lowestValueOf(bucket + 1) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final double mean;
+
+        Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            long total = 0;
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    total += counts[i];
+                    // Midpoint of the bucket
+                    sum += counts[i] * ((lowestValueOf(i) + highestValueOf(i)) / 2.0);
+                }
+            }
+            this.count = total;
+            this.max = max;
+            this.mean = total == 0 ? 0 : sum / total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        // Upper bound of the bucket holding the value at percentile (0 to 100), capped at the recorded max
+        public long valueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100, received: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d (ns)", count, mean,
+                valueAtPercentile(50), valueAtPercentile(90), valueAtPercentile(99), valueAtPercentile(99.9), max);
+        }
+    }
+}
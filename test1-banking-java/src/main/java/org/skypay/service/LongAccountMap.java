@@ -0,0 +1,102 @@
+package org.skypay.service;
+
+// Open-addressing map from primitive long ids to accounts: no boxed keys, no entry objects.
+// Not thread-safe on its own; AccountRegistry guards each instance with its stripe lock,
+// and each AccountPipeline shard only touches its own from the writer thread.
+class LongAccountMap<A> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private A[] values;
+    private int size;
+
+    LongAccountMap() {
+        this.keys = new long[MIN_CAPACITY];
+        this.values = newArray(MIN_CAPACITY);
+        this.size = 0;
+    }
+
+    // Safe to call without a lock: reads only through local array references, so a concurrent
+    // resize can produce a wrong answer (caught by the caller's stamp validation) but never an exception
+    A get(long id, int hash) {
+        long[] currentKeys = keys;
+        A[] currentValues = values;
+        int mask = Math.min(currentKeys.length, currentValues.length) - 1;
+
+        for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            A value = currentValues[i];
+            if (value == null) {
+                return null;
+            }
+            if (currentKeys[i] == id) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    void put(long id, int hash, A account) {
+        // Keep the load factor at or below 1/2 so probe sequences stay short
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        while (values[i] != null) {
+            if (keys[i] == id) {
+                values[i] = account;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = id;
+        values[i] = account;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(EntryVisitor<? super A> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        A[] oldValues = values;
+        long[] newKeys = new long[newCapacity];
+        A[] newValues = newArray(newCapacity);
+        int mask = newCapacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = AccountRegistry.hash(oldKeys[i]) & mask;
+                while (newValues[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                newKeys[j] = oldKeys[i];
+                newValues[j] = oldValues[i];
+            }
+        }
+
+        keys = newKeys;
+        values = newValues;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> A[] newArray(int capacity) {
+        return (A[]) new Object[capacity];
+    }
+
+    interface EntryVisitor<A> {
+        void visit(long id, A account);
+    }
+}
@@ -0,0 +1,223 @@
+package org.skypay.service;
+
+import org.skypay.exception.AccountNotFoundException;
+import org.skypay.journal.AccountJournal;
+import org.skypay.journal.WriteAheadLog;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+// Cold start of a whole ledger from a shared WriteAheadLog. Records of one account must be replayed in
+// order, but accounts are independent, so a single sequential read only deals records out to partitions
+// by account id; each partition then rebuilds its accounts on a fork-join pool, checking every recorded
+// running balance against the one it recomputes.
+public class ReplayEngine {
+
+    private static final int PARTITIONS_PER_THREAD = 4;
+    // How many records a partition rebuilds between checks for another partition's failure
+    private static final int FAILURE_CHECK_INTERVAL = 4096;
+
+    private final ForkJoinPool pool;
+    private final int partitionCount;
+    private final int partitionShift;
+
+    public ReplayEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ReplayEngine(ForkJoinPool pool) {
+        this.pool = pool;
+        // Power of two picked from the high hash bits, as AccountRegistry picks stripes
+        int wanted = Math.max(2, pool.getParallelism() * PARTITIONS_PER_THREAD);
+        this.partitionCount = Integer.highestOneBit(wanted - 1) << 1;
+        this.partitionShift = 32 - Integer.numberOfTrailingZeros(partitionCount);
+    }
+
+    // Rebuilds in-memory accounts only
+    public Ledger replay(Path walPath) throws IOException {
+        return replay(walPath, id -> AccountJournal.NONE);
+    }
+
+    // Each rebuilt account journals new transactions to journals.apply(accountId), e.g. a WalAccountJournal
+    // on the reopened log. Fails if any record's balance does not follow from the records before it.
+    public Ledger replay(Path walPath, LongFunction<AccountJournal> journals) throws IOException {
+        long start = System.nanoTime();
+
+        Partition[] partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition();
+        }
+        long records = WriteAheadLog.replay(walPath, (accountId, epochDay, amount, balance) ->
+            partitions[AccountRegistry.hash(accountId) >>> partitionShift].add(accountId, epochDay, amount, balance));
+
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        pool.invoke(new RebuildTask(partitions, 0, partitionCount, journals, failure));
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        return new Ledger(partitions, partitionShift, records, System.nanoTime() - start);
+    }
+
+    private static final class RebuildTask extends RecursiveAction {
+
+        private final Partition[] partitions;
+        private final int from;
+        private final int to;
+        private final LongFunction<AccountJournal> journals;
+        private final AtomicReference<IOException> failure;
+
+        RebuildTask(Partition[] partitions, int from, int to, LongFunction<AccountJournal> journals,
+                    AtomicReference<IOException> failure) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+            this.journals = journals;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                partitions[from].rebuild(journals, failure);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new RebuildTask(partitions, from, middle, journals, failure),
+                new RebuildTask(partitions, middle, to, journals, failure));
+        }
+    }
+
+    // One partition's records in journal order, as primitive columns, and the accounts rebuilt from them
+    private static final class Partition {
+
+        private long[] accountIds = new long[16];
+        private int[] epochDays = new int[16];
+        private int[] amounts = new int[16];
+        private int[] balances = new int[16];
+        private int size;
+
+        final LongAccountMap<Account> accounts = new LongAccountMap<>();
+
+        void add(long accountId, int epochDay, int amount, int balance) {
+            if (size == accountIds.length) {
+                int capacity = size * 2;
+                accountIds = Arrays.copyOf(accountIds, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+            }
+
+            accountIds[size] = accountId;
+            epochDays[size] = epochDay;
+            amounts[size] = amount;
+            balances[size] = balance;
+            size++;
+        }
+
+        void rebuild(LongFunction<AccountJournal> journals, AtomicReference<IOException> failure) {
+            LongAccountMap<TransactionLog> histories = new LongAccountMap<>();
+
+            for (int i = 0; i < size; i++) {
+                if (i % FAILURE_CHECK_INTERVAL == 0 && failure.get() != null) {
+                    return;
+                }
+
+                long accountId = accountIds[i];
+                int hash = AccountRegistry.hash(accountId);
+                TransactionLog history = histories.get(accountId, hash);
+                if (history == null) {
+                    history = new TransactionLog();
+                    histories.put(accountId, hash, history);
+                }
+
+                // Accounts in a write-ahead log start from zero, as WalAccountJournal.recover assumes
+                int previous = history.isEmpty() ? 0 : history.balanceAt(history.size() - 1);
+                int expected = previous + amounts[i];
+                if (balances[i] != expected) {
+                    failure.compareAndSet(null, new IOException("Account " + accountId + ", transaction " + history.size()
+                        + ": recorded balance " + balances[i] + " does not follow " + previous + " + " + amounts[i]));
+                    return;
+                }
+                history.append(epochDays[i], amounts[i], balances[i]);
+            }
+
+            histories.forEach((accountId, history) ->
+                accounts.put(accountId, AccountRegistry.hash(accountId), new Account(history, journals.apply(accountId))));
+
+            // The raw records are now held by the accounts' logs
+            accountIds = null;
+            epochDays = null;
+            amounts = null;
+            balances = null;
+        }
+    }
+
+    public static final class Ledger {
+
+        private final Partition[] partitions;
+        private final int partitionShift;
+        private final long transactions;
+        private final long elapsedNanos;
+
+        Ledger(Partition[] partitions, int partitionShift, long transactions, long elapsedNanos) {
+            this.partitions = partitions;
+            this.partitionShift = partitionShift;
+            this.transactions = transactions;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Account get(long accountId) {
+            int hash = AccountRegistry.hash(accountId);
+            Account account = partitions[hash >>> partitionShift].accounts.get(accountId, hash);
+            if (account == null) {
+                throw new AccountNotFoundException("Account with ID " + accountId + " not found");
+            }
+            return account;
+        }
+
+        public boolean contains(long accountId) {
+            int hash = AccountRegistry.hash(accountId);
+            return partitions[hash >>> partitionShift].accounts.get(accountId, hash) != null;
+        }
+
+        public int size() {
+            int size = 0;
+            for (Partition partition : partitions) {
+                size += partition.accounts.size();
+            }
+            return size;
+        }
+
+        public void forEach(LedgerVisitor visitor) {
+            for (Partition partition : partitions) {
+                partition.accounts.forEach(visitor::visit);
+            }
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d accounts, %d transactions replayed in %.3f s", size(), transactions, elapsedNanos / 1e9);
+        }
+    }
+
+    public interface LedgerVisitor {
+        void visit(long accountId, Account account);
+    }
+}
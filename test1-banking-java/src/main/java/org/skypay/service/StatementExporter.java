@@ -0,0 +1,172 @@
+package org.skypay.service;
+
+import org.skypay.journal.AccountJournal;
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+// Machine-readable export of an account's full history, oldest first, as CSV or NDJSON. Rows are
+// encoded by hand into one large reusable buffer and written out block by block, so memory stays
+// constant whatever the history size. Not thread-safe: keep one per thread.
+public class StatementExporter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    // Longest possible row: NDJSON keys and punctuation, an ISO date of an extreme year and two 11-char ints
+    private static final int MAX_ROW_LENGTH = 96;
+
+    private static final byte[] CSV_HEADER = "date,amount,balance\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_DATE = "{\"date\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_AMOUNT = "\",\"amount\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_BALANCE = ",\"balance\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JSON_END = "}\n".getBytes(StandardCharsets.US_ASCII);
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private final byte[] buffer;
+    private final ByteBuffer byteView;
+    private int position;
+    private long written;
+
+    // Consecutive rows usually share a date, so the last encoded one is kept
+    private int cachedEpochDay;
+    private byte[] cachedDate;
+
+    public StatementExporter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public StatementExporter(int bufferSize) {
+        if (bufferSize < MAX_ROW_LENGTH) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_ROW_LENGTH + ", received: " + bufferSize);
+        }
+
+        this.buffer = new byte[bufferSize];
+        this.byteView = ByteBuffer.wrap(buffer);
+    }
+
+    // Each export returns the number of bytes written
+    public long export(TransactionLog transactions, Format format, Path file) throws IOException {
+        return export(AccountJournal.NONE, transactions, format, file);
+    }
+
+    public long export(TransactionLog transactions, Format format, OutputStream out) throws IOException {
+        return export(AccountJournal.NONE, transactions, format, out);
+    }
+
+    public long export(TransactionLog transactions, Format format, WritableByteChannel channel) throws IOException {
+        return export(AccountJournal.NONE, transactions, format, channel);
+    }
+
+    // History the journal archived, then transactions, as one export with a single header
+    public long export(AccountJournal archive, TransactionLog transactions, Format format, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return export(archive, transactions, format, channel);
+        }
+    }
+
+    public long export(AccountJournal archive, TransactionLog transactions, Format format, OutputStream out) throws IOException {
+        long written = render(archive, transactions, format, length -> out.write(buffer, 0, length));
+        out.flush();
+        return written;
+    }
+
+    public long export(AccountJournal archive, TransactionLog transactions, Format format, WritableByteChannel channel)
+            throws IOException {
+        return render(archive, transactions, format, length -> {
+            byteView.clear().limit(length);
+            while (byteView.hasRemaining()) {
+                channel.write(byteView);
+            }
+        });
+    }
+
+    private long render(AccountJournal archive, TransactionLog transactions, Format format, StreamingStatementPrinter.Sink sink)
+            throws IOException {
+        written = 0;
+        position = 0;
+        if (format == Format.CSV) {
+            position = Ascii.putBytes(buffer, position, CSV_HEADER);
+        }
+
+        archive.readArchive(segment -> appendRows(segment, format, sink));
+        appendRows(transactions, format, sink);
+
+        flush(sink);
+        return written;
+    }
+
+    private void appendRows(TransactionLog transactions, Format format, StreamingStatementPrinter.Sink sink) throws IOException {
+        for (int i = 0; i < transactions.size(); i++) {
+            if (position + MAX_ROW_LENGTH > buffer.length) {
+                flush(sink);
+            }
+
+            if (format == Format.CSV) {
+                appendCsvRow(transactions.epochDayAt(i), transactions.amountAt(i), transactions.balanceAt(i));
+            } else {
+                appendJsonRow(transactions.epochDayAt(i), transactions.amountAt(i), transactions.balanceAt(i));
+            }
+        }
+    }
+
+    private void flush(StreamingStatementPrinter.Sink sink) throws IOException {
+        sink.write(position);
+        written += position;
+        position = 0;
+    }
+
+    private void appendCsvRow(int epochDay, int amount, int balance) {
+        position = Ascii.putBytes(buffer, position, encodeDate(epochDay));
+        buffer[position++] = ',';
+        position = Ascii.putInt(buffer, position, amount);
+        buffer[position++] = ',';
+        position = Ascii.putInt(buffer, position, balance);
+        buffer[position++] = '\n';
+    }
+
+    private void appendJsonRow(int epochDay, int amount, int balance) {
+        position = Ascii.putBytes(buffer, position, JSON_DATE);
+        position = Ascii.putBytes(buffer, position, encodeDate(epochDay));
+        position = Ascii.putBytes(buffer, position, JSON_AMOUNT);
+        position = Ascii.putInt(buffer, position, amount);
+        position = Ascii.putBytes(buffer, position, JSON_BALANCE);
+        position = Ascii.putInt(buffer, position, balance);
+        position = Ascii.putBytes(buffer, position, JSON_END);
+    }
+
+    // ISO-8601 yyyy-MM-dd, as LocalDate.toString() prints it
+    private byte[] encodeDate(int epochDay) {
+        if (cachedDate != null && cachedEpochDay == epochDay) {
+            return cachedDate;
+        }
+
+        byte[] date;
+        if (epochDay >= Ascii.MIN_FOUR_DIGIT_YEAR_DAY && epochDay <= Ascii.MAX_FOUR_DIGIT_YEAR_DAY) {
+            int civil = Ascii.civilDate(epochDay);
+            date = cachedDate != null && cachedDate.length == 10 ? cachedDate : new byte[10];
+            Ascii.putFourDigits(date, 0, civil / 10000);
+            date[4] = '-';
+            Ascii.putTwoDigits(date, 5, civil / 100 % 100);
+            date[7] = '-';
+            Ascii.putTwoDigits(date, 8, civil % 100);
+        } else {
+            date = LocalDate.ofEpochDay(epochDay).toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        cachedEpochDay = epochDay;
+        cachedDate = date;
+        return date;
+    }
+}
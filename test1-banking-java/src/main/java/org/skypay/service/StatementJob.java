@@ -0,0 +1,151 @@
+package org.skypay.service;
+
+import org.skypay.model.ConcurrentAccount;
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+// End-of-day run that renders every account's statement into its own file, one virtual thread per
+// account. A semaphore caps how many statements are in flight, since each one holds a snapshot of its
+// account's history and a render buffer; that cap bounds memory however many accounts there are.
+public class StatementJob {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path outputDirectory;
+    private final int maxInFlight;
+
+    public StatementJob(Path outputDirectory, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Statements in flight must be positive, received: " + maxInFlight);
+        }
+
+        this.outputDirectory = outputDirectory;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // Writes statement-<id>.txt for every account. If any statement fails the others still run, and the
+    // first failure is thrown at the end with the rest attached as suppressed exceptions.
+    public Report run(AccountRegistry registry) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+
+        // Collected first, so no stripe lock is held while waiting for a permit. Accounts opened after
+        // size() was read may be skipped; they are picked up by the next run.
+        int count = registry.size();
+        long[] ids = new long[count];
+        ConcurrentAccount[] accounts = new ConcurrentAccount[count];
+        int[] collected = {0};
+        registry.forEach((id, account) -> {
+            int i = collected[0];
+            if (i < ids.length) {
+                ids[i] = id;
+                accounts[i] = account;
+                collected[0] = i + 1;
+            }
+        });
+
+        Semaphore permits = new Semaphore(maxInFlight);
+        LongAdder transactions = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        ConcurrentLinkedQueue<IOException> failures = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < collected[0]; i++) {
+                long id = ids[i];
+                ConcurrentAccount account = accounts[i];
+                permits.acquire();
+                executor.execute(() -> {
+                    try {
+                        TransactionLog history = account.getTransactions();
+                        bytes.add(render(id, history));
+                        transactions.add(history.size());
+                    } catch (IOException | RuntimeException e) {
+                        failures.add(new IOException("Statement for account " + id + " failed", e));
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        IOException failure = failures.poll();
+        if (failure != null) {
+            for (IOException other : failures) {
+                failure.addSuppressed(other);
+            }
+            throw failure;
+        }
+        return new Report(collected[0], transactions.sum(), bytes.sum(), System.nanoTime() - start);
+    }
+
+    public Path statementPath(long accountId) {
+        return outputDirectory.resolve("statement-" + accountId + ".txt");
+    }
+
+    private long render(long accountId, TransactionLog history) throws IOException {
+        try (FileChannel channel = FileChannel.open(statementPath(accountId),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new StreamingStatementPrinter(BUFFER_SIZE).print(history, channel);
+            return channel.position();
+        }
+    }
+
+    public static final class Report {
+
+        private final int accounts;
+        private final long transactions;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Report(int accounts, long transactions, long bytes, long elapsedNanos) {
+            this.accounts = accounts;
+            this.transactions = transactions;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getAccounts() {
+            return accounts;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getAccountsPerSecond() {
+            return accounts / seconds();
+        }
+
+        public double getMegabytesPerSecond() {
+            return bytes / (1024.0 * 1024.0) / seconds();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements, %d transactions, %.1f MiB in %.3f s (%.0f statements/s, %.1f MiB/s)",
+                accounts, transactions, bytes / (1024.0 * 1024.0), seconds(), getAccountsPerSecond(), getMegabytesPerSecond());
+        }
+
+        private double seconds() {
+            return Math.max(elapsedNanos, 1) / 1e9;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.skypay.service;
 
 import org.skypay.model.Transaction;
+import org.skypay.model.TransactionLog;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
@@ -9,6 +13,8 @@ public class StatementPrinter {
     
     private static final String HEADER = "Date        || Amount || Balance";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // Every account has its own StatementPrinter, so the encoding buffer is kept per thread instead
+    private static final ThreadLocal<StreamingStatementPrinter> STREAMING = ThreadLocal.withInitial(StreamingStatementPrinter::new);
     
     public void print(List<Transaction> transactions) {
         System.out.println(HEADER);
@@ -21,6 +27,20 @@ public class StatementPrinter {
         }
     }
     
+    public void print(TransactionLog transactions) {
+        print(transactions, 0, transactions.size());
+    }
+    
+    // Prints rows fromIndex (inclusive) to toIndex (exclusive) in reverse chronological order
+    public void print(TransactionLog transactions, int fromIndex, int toIndex) {
+        // Same output, encoded by hand into this thread's buffer, so printers stay safe to share
+        try {
+            STREAMING.get().print(transactions, fromIndex, toIndex, (OutputStream) System.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     private String formatTransaction(Transaction transaction) {
         String date = transaction.getDate().format(DATE_FORMATTER);
         String amount = String.valueOf(transaction.getAmount());
@@ -0,0 +1,166 @@
+package org.skypay.service;
+
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+// Renders the same statement as StatementPrinter, byte for byte, but encodes every line by hand into
+// one reusable buffer and hands it to the destination in large blocks. Not thread-safe: keep one per thread.
+public class StreamingStatementPrinter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    // Longest possible line: 10-char date + separators + two 11-char ints + padding + line separator
+    private static final int MAX_LINE_LENGTH = 64;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEADER = "Date        || Amount || Balance".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEPARATOR = "|| ".getBytes(StandardCharsets.US_ASCII);
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    // Column widths of the "%-12s|| %-7s|| %s" layout, each value followed by at least the given gap
+    private static final int DATE_WIDTH = 12;
+    private static final int DATE_GAP = 2;
+    private static final int AMOUNT_WIDTH = 7;
+    private static final int AMOUNT_GAP = 3;
+
+    private final byte[] buffer;
+    private int position;
+
+    // Consecutive rows usually share a date, so the last encoded one is kept
+    private int cachedEpochDay;
+    private byte[] cachedDate;
+
+    private ByteBuffer byteView;
+    private char[] chars;
+    private CharBuffer charView;
+
+    public StreamingStatementPrinter() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingStatementPrinter(int bufferSize) {
+        if (bufferSize < MAX_LINE_LENGTH) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MAX_LINE_LENGTH + ", received: " + bufferSize);
+        }
+
+        this.buffer = new byte[bufferSize];
+        this.position = 0;
+    }
+
+    public void print(TransactionLog transactions, OutputStream out) throws IOException {
+        print(transactions, 0, transactions.size(), out);
+    }
+
+    public void print(TransactionLog transactions, WritableByteChannel channel) throws IOException {
+        print(transactions, 0, transactions.size(), channel);
+    }
+
+    public void print(TransactionLog transactions, Appendable out) throws IOException {
+        print(transactions, 0, transactions.size(), out);
+    }
+
+    // Rows fromIndex (inclusive) to toIndex (exclusive), newest first
+    public void print(TransactionLog transactions, int fromIndex, int toIndex, OutputStream out) throws IOException {
+        render(transactions, fromIndex, toIndex, length -> out.write(buffer, 0, length));
+        out.flush();
+    }
+
+    public void print(TransactionLog transactions, int fromIndex, int toIndex, WritableByteChannel channel) throws IOException {
+        if (byteView == null) {
+            byteView = ByteBuffer.wrap(buffer);
+        }
+
+        render(transactions, fromIndex, toIndex, length -> {
+            byteView.clear().limit(length);
+            while (byteView.hasRemaining()) {
+                channel.write(byteView);
+            }
+        });
+    }
+
+    public void print(TransactionLog transactions, int fromIndex, int toIndex, Appendable out) throws IOException {
+        if (chars == null) {
+            chars = new char[buffer.length];
+            charView = CharBuffer.wrap(chars);
+        }
+
+        render(transactions, fromIndex, toIndex, length -> {
+            // Output is pure ASCII, so widening each byte is the whole decoding step
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) buffer[i];
+            }
+            charView.clear().limit(length);
+            out.append(charView);
+        });
+    }
+
+    // Header, then rows fromIndex (inclusive) to toIndex (exclusive) newest first
+    void render(TransactionLog transactions, int fromIndex, int toIndex, Sink sink) throws IOException {
+        Objects.checkFromToIndex(fromIndex, toIndex, transactions.size());
+        position = 0;
+        position = Ascii.putBytes(buffer, position, HEADER);
+        position = Ascii.putBytes(buffer, position, LINE_SEPARATOR);
+
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            if (position + MAX_LINE_LENGTH > buffer.length) {
+                sink.write(position);
+                position = 0;
+            }
+            appendLine(transactions.epochDayAt(i), transactions.amountAt(i), transactions.balanceAt(i));
+        }
+
+        sink.write(position);
+        position = 0;
+    }
+
+    private void appendLine(int epochDay, int amount, int balance) {
+        byte[] date = encodeDate(epochDay);
+        position = Ascii.putBytes(buffer, position, date);
+        position = Ascii.putSpaces(buffer, position, Math.max(DATE_GAP, DATE_WIDTH - date.length));
+        position = Ascii.putBytes(buffer, position, SEPARATOR);
+
+        int amountLength = Ascii.lengthOf(amount);
+        position = Ascii.putInt(buffer, position, amount);
+        position = Ascii.putSpaces(buffer, position, Math.max(AMOUNT_GAP, AMOUNT_WIDTH - amountLength));
+        position = Ascii.putBytes(buffer, position, SEPARATOR);
+
+        position = Ascii.putInt(buffer, position, balance);
+        position = Ascii.putBytes(buffer, position, LINE_SEPARATOR);
+    }
+
+    private byte[] encodeDate(int epochDay) {
+        if (cachedDate != null && cachedEpochDay == epochDay) {
+            return cachedDate;
+        }
+
+        byte[] date;
+        if (epochDay >= Ascii.MIN_FOUR_DIGIT_YEAR_DAY && epochDay <= Ascii.MAX_FOUR_DIGIT_YEAR_DAY) {
+            int civil = Ascii.civilDate(epochDay);
+            date = cachedDate != null && cachedDate.length == 10 ? cachedDate : new byte[10];
+            Ascii.putTwoDigits(date, 0, civil % 100);
+            date[2] = '/';
+            Ascii.putTwoDigits(date, 3, civil / 100 % 100);
+            date[5] = '/';
+            Ascii.putFourDigits(date, 6, civil / 10000);
+        } else {
+            // Years outside 0001-9999 print as year-of-era with a sign or extra digits; leave those to the formatter
+            date = LocalDate.ofEpochDay(epochDay).format(DATE_FORMATTER).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        cachedEpochDay = epochDay;
+        cachedDate = date;
+        return date;
+    }
+
+    interface Sink {
+        void write(int length) throws IOException;
+    }
+}
@@ -0,0 +1,160 @@
+package org.skypay.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedAccountJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRestoreAccountFromJournal() throws IOException {
+        Path path = directory.resolve("account.journal");
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, true)) {
+            Account account = new Account(journal);
+            account.deposite(1000, LocalDate.of(2012, 1, 10));
+            account.deposite(2000, LocalDate.of(2012, 1, 13));
+            account.withdraw(500, LocalDate.of(2012, 1, 14));
+        }
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, true)) {
+            TransactionLog history = journal.load();
+            Account account = new Account(history, journal);
+
+            assertEquals(3, history.size());
+            assertEquals(LocalDate.of(2012, 1, 14), history.dateAt(2));
+            assertEquals(2500, account.getBalance());
+
+            // The reopened journal keeps appending after the recovered records
+            account.deposite(100, LocalDate.of(2012, 1, 15));
+        }
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            assertEquals(4, journal.getCommittedCount());
+            assertEquals(2600, journal.load().balanceAt(3));
+        }
+    }
+
+    @Test
+    void shouldIgnoreRecordsThatWereNeverCommitted() throws IOException {
+        Path path = directory.resolve("account.journal");
+        MappedAccountJournal crashed = MappedAccountJournal.open(path, false);
+        crashed.record(15_000, 1000, 1000);
+        crashed.commit();
+        crashed.record(15_001, 500, 1500);
+
+        // A second handle sees the file as a restarted process would
+        try (MappedAccountJournal reopened = MappedAccountJournal.open(path, false)) {
+            assertEquals(1, reopened.getCommittedCount());
+            assertEquals(1, reopened.load().size());
+        }
+        crashed.close();
+    }
+
+    @Test
+    void shouldGrowAcrossManyRemaps() throws IOException {
+        Path path = directory.resolve("account.journal");
+        int rows = 100_000;
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            Account account = new Account(journal);
+            int[] batch = new int[1000];
+            Arrays.fill(batch, 1);
+            for (int i = 0; i < rows / batch.length; i++) {
+                account.applyBatch(batch, LocalDate.of(2012, 1, 10));
+            }
+        }
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            TransactionLog history = journal.load();
+            assertEquals(rows, history.size());
+            assertEquals(rows, history.balanceAt(rows - 1));
+        }
+    }
+
+    @Test
+    void shouldRejectBrokenBalanceChain() throws IOException {
+        Path path = directory.resolve("account.journal");
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            journal.record(15_000, 1000, 1000);
+            journal.record(15_001, 500, 1500);
+            journal.commit();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer tampered = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(9999).flip();
+            channel.write(tampered, MappedAccountJournal.HEADER_SIZE + MappedAccountJournal.RECORD_SIZE + 8);
+        }
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            IOException exception = assertThrows(IOException.class, journal::load);
+            assertTrue(exception.getMessage().contains("record 1"));
+        }
+    }
+
+    @Test
+    void shouldRefuseAllWorkAfterFailedRecordForce() throws IOException {
+        assertFailedCommitIsNeverPublished(mapping -> mapping.capacity() != MappedAccountJournal.HEADER_SIZE);
+    }
+
+    @Test
+    void shouldRefuseAllWorkAfterFailedHeaderForce() throws IOException {
+        // The new count is already in the mapped header when its force fails
+        assertFailedCommitIsNeverPublished(mapping -> mapping.capacity() == MappedAccountJournal.HEADER_SIZE);
+    }
+
+    private void assertFailedCommitIsNeverPublished(Predicate<MappedByteBuffer> failsOn) throws IOException {
+        Path path = directory.resolve("account.journal");
+        boolean[] failing = {false};
+        MappedAccountJournal.Forcer forcer = mapping -> {
+            if (failing[0] && failsOn.test(mapping)) {
+                throw new UncheckedIOException(new IOException("Injected force failure"));
+            }
+            mapping.force();
+        };
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, true, forcer)) {
+            Account account = new Account(journal);
+            account.deposite(1000, LocalDate.of(2012, 1, 10));
+
+            failing[0] = true;
+            assertThrows(UncheckedIOException.class, () -> account.deposite(500, LocalDate.of(2012, 1, 11)));
+            assertEquals(1000, account.getBalance());
+
+            // The disk works again, but the failed deposit must not be published by a later commit or close()
+            failing[0] = false;
+            assertThrows(UncheckedIOException.class, () -> account.deposite(200, LocalDate.of(2012, 1, 12)));
+            assertEquals(1000, account.getBalance());
+        }
+
+        try (MappedAccountJournal journal = MappedAccountJournal.open(path, false)) {
+            assertEquals(1, journal.getCommittedCount());
+            assertEquals(1000, journal.load().balanceAt(0));
+        }
+    }
+
+    @Test
+    void shouldRejectFileThatIsNotAJournal() throws IOException {
+        Path path = directory.resolve("other.bin");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[32]));
+        }
+
+        assertThrows(IOException.class, () -> MappedAccountJournal.open(path, false));
+    }
+}
@@ -0,0 +1,211 @@
+package org.skypay.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+import org.skypay.service.StatementExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedAccountJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReplayOnlyTailSinceLastSnapshot() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 4, true)) {
+            Account account = new Account(journal);
+            for (int day = 1; day <= 10; day++) {
+                account.deposite(100, LocalDate.ofEpochDay(15_000 + day));
+            }
+        }
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 4, true)) {
+            TransactionLog tail = journal.getRecoveredTail();
+            Account account = new Account(journal.getSnapshotBalance(), tail, journal);
+
+            assertEquals(8, journal.getArchivedCount());
+            assertEquals(800, journal.getSnapshotBalance());
+            assertEquals(2, tail.size());
+            assertEquals(1000, account.getBalance());
+
+            account.withdraw(300, LocalDate.ofEpochDay(15_011));
+            assertEquals(700, account.getBalance());
+        }
+    }
+
+    @Test
+    void shouldKeepArchivedHistoryReachable() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 3, false)) {
+            Account account = new Account(journal);
+            for (int day = 1; day <= 7; day++) {
+                account.deposite(day, LocalDate.ofEpochDay(day));
+            }
+        }
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 3, false)) {
+            TransactionLog archive = journal.loadArchive();
+
+            assertEquals(6, archive.size());
+            assertEquals(1, archive.epochDayAt(0));
+            assertEquals(21, archive.balanceAt(5));
+            assertEquals(journal.getSnapshotBalance(), archive.balanceAt(archive.size() - 1));
+        }
+    }
+
+    @Test
+    void shouldExportArchivedHistoryThroughAccount() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 3, false)) {
+            Account account = new Account(journal);
+            for (int day = 1; day <= 7; day++) {
+                account.deposite(day, LocalDate.ofEpochDay(day));
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 3, false)) {
+            Account account = new Account(journal.getSnapshotBalance(), journal.getRecoveredTail(), journal);
+            // Reaches the threshold again, so the rows sealed now are both archived and still in the account
+            account.deposite(8, LocalDate.ofEpochDay(8));
+            account.deposite(9, LocalDate.ofEpochDay(9));
+            assertEquals(9, journal.getArchivedCount());
+
+            account.exportFullStatement(StatementExporter.Format.CSV, out);
+        }
+
+        String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(10, lines.length);
+        assertEquals("date,amount,balance", lines[0]);
+        for (int day = 1; day <= 9; day++) {
+            assertEquals(LocalDate.ofEpochDay(day) + "," + day + "," + day * (day + 1) / 2, lines[day]);
+        }
+    }
+
+    @Test
+    void shouldStartEmptyInNewDirectory() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory.resolve("new"), 16, false)) {
+            assertEquals(0, journal.getArchivedCount());
+            assertEquals(0, journal.getSnapshotBalance());
+            assertTrue(journal.getRecoveredTail().isEmpty());
+            assertTrue(journal.loadArchive().isEmpty());
+        }
+    }
+
+    @Test
+    void shouldAdoptSegmentSealedBeforeSnapshotWasWritten() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 100, false)) {
+            Account account = new Account(journal);
+            account.deposite(500, LocalDate.of(2012, 1, 10));
+            account.withdraw(200, LocalDate.of(2012, 1, 11));
+        }
+
+        // Simulates a crash right after the active journal was renamed, before the snapshot was updated
+        Files.move(directory.resolve(SegmentedAccountJournal.ACTIVE_FILE),
+            directory.resolve("segment-0000000000000000000.journal"), StandardCopyOption.ATOMIC_MOVE);
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 100, false)) {
+            assertEquals(2, journal.getArchivedCount());
+            assertEquals(300, journal.getSnapshotBalance());
+            assertTrue(journal.getRecoveredTail().isEmpty());
+        }
+    }
+
+    @Test
+    void shouldKeepCommittingWhileCompactionFails() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 2, false)) {
+            // A non-empty directory where the first segment belongs makes sealing it fail
+            Path blocker = directory.resolve("segment-0000000000000000000.journal");
+            Files.createDirectories(blocker.resolve("blocker"));
+
+            Account account = new Account(journal);
+            account.deposite(100, LocalDate.of(2012, 1, 10));
+            account.deposite(200, LocalDate.of(2012, 1, 11));
+            account.deposite(300, LocalDate.of(2012, 1, 12));
+
+            assertEquals(600, account.getBalance());
+            assertNotNull(journal.getCompactionFailure());
+            assertEquals(0, journal.getArchivedCount());
+
+            Files.delete(blocker.resolve("blocker"));
+            Files.delete(blocker);
+            account.deposite(400, LocalDate.of(2012, 1, 13));
+
+            assertNull(journal.getCompactionFailure());
+            assertEquals(4, journal.getArchivedCount());
+            assertEquals(1000, journal.getSnapshotBalance());
+        }
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 2, false)) {
+            assertEquals(4, journal.getArchivedCount());
+            assertEquals(1000, journal.getSnapshotBalance());
+            assertTrue(journal.getRecoveredTail().isEmpty());
+        }
+    }
+
+    @Test
+    void shouldRefuseWorkUntilActiveJournalIsReopened() throws IOException {
+        boolean[] failOpen = {false};
+        SegmentedAccountJournal.ActiveOpener opener = (path, force) -> {
+            if (failOpen[0]) {
+                throw new IOException("Injected open failure");
+            }
+            return MappedAccountJournal.open(path, force);
+        };
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 2, false, opener)) {
+            Account account = new Account(journal);
+            account.deposite(100, LocalDate.of(2012, 1, 10));
+
+            // The active journal is sealed, then opening the next one fails
+            failOpen[0] = true;
+            account.deposite(200, LocalDate.of(2012, 1, 11));
+            assertNotNull(journal.getCompactionFailure());
+            assertEquals(2, journal.getArchivedCount());
+
+            assertThrows(UncheckedIOException.class, () -> account.deposite(300, LocalDate.of(2012, 1, 12)));
+            assertEquals(300, account.getBalance());
+
+            failOpen[0] = false;
+            account.deposite(300, LocalDate.of(2012, 1, 12));
+            assertEquals(600, account.getBalance());
+        }
+
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 2, false)) {
+            assertEquals(2, journal.getArchivedCount());
+            assertEquals(300, journal.getSnapshotBalance());
+            assertEquals(1, journal.getRecoveredTail().size());
+            assertEquals(600, journal.getRecoveredTail().balanceAt(0));
+            assertEquals(2, journal.loadArchive().size());
+        }
+    }
+
+    @Test
+    void shouldRejectCorruptSnapshot() throws IOException {
+        try (SegmentedAccountJournal journal = SegmentedAccountJournal.open(directory, 1, false)) {
+            new Account(journal).deposite(100, LocalDate.of(2012, 1, 10));
+        }
+
+        Path snapshot = directory.resolve(SegmentedAccountJournal.SNAPSHOT_FILE);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[16] ^= 1;
+        Files.write(snapshot, bytes);
+
+        assertThrows(IOException.class, () -> SegmentedAccountJournal.open(directory, 1, false));
+    }
+
+    @Test
+    void shouldRejectNonPositiveThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> SegmentedAccountJournal.open(directory, 0, false));
+    }
+}
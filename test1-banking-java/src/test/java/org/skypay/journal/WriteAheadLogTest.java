@@ -0,0 +1,258 @@
+package org.skypay.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReplayRecordsInAppendOrder() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.append(1L, 15_000, 1000, 1000);
+            long last = log.append(2L, 15_001, 500, 500);
+            log.sync(last);
+            assertEquals(2, log.getDurableSequence());
+        }
+
+        List<String> records = new ArrayList<>();
+        long count = WriteAheadLog.replay(path, (accountId, epochDay, amount, balance) ->
+            records.add(accountId + ":" + epochDay + ":" + amount + ":" + balance));
+
+        assertEquals(2, count);
+        assertEquals(List.of("1:15000:1000:1000", "2:15001:500:500"), records);
+    }
+
+    @Test
+    void shouldDropTornTailWhenReopened() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.sync(log.append(1L, 15_000, 1000, 1000));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7}));
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.sync(log.append(1L, 15_001, -200, 800));
+        }
+
+        assertEquals(WriteAheadLog.HEADER_SIZE + 2L * WriteAheadLog.RECORD_SIZE, Files.size(path));
+        assertEquals(2, WriteAheadLog.replay(path, (accountId, epochDay, amount, balance) -> { }));
+    }
+
+    @Test
+    void shouldStopReplayAtCorruptRecord() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.append(1L, 15_000, 1000, 1000);
+            log.append(1L, 15_001, 1000, 2000);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), WriteAheadLog.HEADER_SIZE + WriteAheadLog.RECORD_SIZE + 10);
+        }
+
+        assertEquals(1, WriteAheadLog.replay(path, (accountId, epochDay, amount, balance) -> { }));
+    }
+
+    @Test
+    void shouldShareFsyncsBetweenConcurrentWriters() throws Exception {
+        Path path = directory.resolve("ledger.wal");
+        int threads = 8;
+        int perThread = 200;
+
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long accountId = t;
+                Thread writer = new Thread(() -> {
+                    Account account = new Account(new WalAccountJournal(log, accountId));
+                    for (int i = 0; i < perThread; i++) {
+                        account.deposite(1, LocalDate.of(2012, 1, 10));
+                    }
+                });
+                writer.start();
+                writers.add(writer);
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(threads * perThread, log.getDurableSequence());
+            assertTrue(log.getSyncCount() <= threads * perThread);
+        }
+
+        assertEquals(threads * perThread, WriteAheadLog.replay(path, (accountId, epochDay, amount, balance) -> { }));
+        assertEquals(perThread, WalAccountJournal.recover(path, 3L).size());
+    }
+
+    @Test
+    void shouldRecoverDurableAccountAfterRestart() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            Account account = new Account(new WalAccountJournal(log, 7L));
+            account.deposite(1000, LocalDate.of(2012, 1, 10));
+            account.deposite(2000, LocalDate.of(2012, 1, 13));
+            account.applyBatch(new int[] {-500, -10_000}, LocalDate.of(2012, 1, 14));
+            assertThrows(InsufficientBalanceException.class, () -> account.withdraw(5000, LocalDate.of(2012, 1, 15)));
+        }
+
+        TransactionLog history = WalAccountJournal.recover(path, 7L);
+        Account recovered = new Account(history, AccountJournal.NONE);
+
+        assertEquals(3, history.size());
+        assertEquals(2500, recovered.getBalance());
+        assertEquals(-500, history.amountAt(2));
+    }
+
+    @Test
+    void shouldRefuseAllWorkAfterFailedFsync() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        WriteAheadLog.open(path).close();
+        FailingChannel channel = new FailingChannel(FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        channel.position(channel.size());
+
+        try (WriteAheadLog log = new WriteAheadLog(channel, 0)) {
+            Account account = new Account(new WalAccountJournal(log, 7L));
+            account.deposite(1000, LocalDate.of(2012, 1, 10));
+
+            channel.failForce = true;
+            assertThrows(UncheckedIOException.class, () -> account.deposite(500, LocalDate.of(2012, 1, 11)));
+            assertEquals(1000, account.getBalance());
+
+            // The disk works again, but the failed deposit must never become durable through a later fsync
+            channel.failForce = false;
+            assertThrows(UncheckedIOException.class, () -> account.deposite(200, LocalDate.of(2012, 1, 12)));
+            assertThrows(UncheckedIOException.class, () -> log.append(8L, 15_000, 1, 1));
+            assertEquals(1, log.getDurableSequence());
+        }
+
+        TransactionLog history = WalAccountJournal.recover(path, 7L);
+        assertEquals(1, history.size());
+        assertEquals(1000, history.balanceAt(0));
+    }
+
+    // Delegates to a real channel, but fsync fails while failForce is set
+    private static final class FailingChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        volatile boolean failForce;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Injected fsync failure");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.journal.AccountJournal;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountCodecTest {
+
+    @Test
+    void shouldRoundTripTransaction() {
+        Transaction transaction = new Transaction(LocalDate.of(2012, 1, 14), -500, 2500);
+
+        byte[] encoded = AccountCodec.encode(transaction);
+        Transaction decoded = AccountCodec.decodeTransaction(encoded);
+
+        assertEquals(LocalDate.of(2012, 1, 14), decoded.getDate());
+        assertEquals(-500, decoded.getAmount());
+        assertEquals(2500, decoded.getBalance());
+        // 4-byte header, then 3 + 2 + 2 bytes of varints
+        assertEquals(11, encoded.length);
+    }
+
+    @Test
+    void shouldRoundTripExtremeValues() {
+        Transaction transaction = new Transaction(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+        Transaction decoded = AccountCodec.decodeTransaction(AccountCodec.encode(transaction));
+
+        assertEquals(Integer.MIN_VALUE, decoded.getEpochDay());
+        assertEquals(Integer.MAX_VALUE, decoded.getAmount());
+        assertEquals(Integer.MIN_VALUE, decoded.getBalance());
+    }
+
+    @Test
+    void shouldRoundTripAccountHistory() {
+        Account account = new Account();
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.deposite(2000, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 14));
+        account.deposite(50, LocalDate.of(2011, 12, 1));
+
+        Account decoded = AccountCodec.decodeAccount(AccountCodec.encode(account));
+
+        assertEquals(account.getBalance(), decoded.getBalance());
+        assertSameHistory(account.history(), decoded.history());
+        assertEquals(account.monthlySummaries().size(), decoded.monthlySummaries().size());
+    }
+
+    @Test
+    void shouldKeepOpeningBalanceAndBalancesThatDoNotFollow() {
+        TransactionLog history = new TransactionLog();
+        history.append(15_000, 100, 600);
+        history.append(15_001, -50, 540);
+        Account account = new Account(500, history, AccountJournal.NONE);
+
+        Account decoded = AccountCodec.decodeAccount(AccountCodec.encode(account));
+
+        assertEquals(540, decoded.getBalance());
+        assertSameHistory(history, decoded.history());
+
+        Account empty = AccountCodec.decodeAccount(AccountCodec.encode(new Account(700, new TransactionLog(), AccountJournal.NONE)));
+        assertEquals(700, empty.getBalance());
+        assertTrue(empty.history().isEmpty());
+    }
+
+    @Test
+    void shouldEncodeTypicalHistoryInFewBytesPerRow() {
+        Account account = new Account();
+        for (int i = 0; i < 10_000; i++) {
+            LocalDate date = LocalDate.of(2012, 1, 1).plusDays(i / 4);
+            if (i % 4 == 3) {
+                account.withdraw(50, date);
+            } else {
+                account.deposite(25, date);
+            }
+        }
+        account.compactHistoryBefore(LocalDate.of(2013, 1, 1));
+
+        byte[] encoded = AccountCodec.encode(account);
+
+        assertTrue(encoded.length <= 2 * 10_000 + 32, "encoded size " + encoded.length);
+        assertSameHistory(account.history(), AccountCodec.decodeAccount(encoded).history());
+    }
+
+    @Test
+    void shouldRejectDamagedOrForeignInput() {
+        Account account = new Account();
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        byte[] encoded = AccountCodec.encode(account);
+
+        byte[] flipped = encoded.clone();
+        flipped[6] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeAccount(flipped));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeAccount(truncated));
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeTransaction(encoded));
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeAccount(new byte[] {'S', 'K'}));
+
+        byte[] transaction = AccountCodec.encode(new Transaction(15_000, 10, 10));
+        byte[] trailing = Arrays.copyOf(transaction, transaction.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeTransaction(trailing));
+        byte[] cut = Arrays.copyOf(transaction, transaction.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeTransaction(cut));
+    }
+
+    @Test
+    void shouldRejectDayOutsideIntRangeWithValidChecksum() {
+        byte[] buffer = new byte[64];
+        int position = AccountCodec.HEADER_SIZE;
+        buffer[0] = AccountCodec.MAGIC_0;
+        buffer[1] = AccountCodec.MAGIC_1;
+        buffer[2] = AccountCodec.VERSION;
+        buffer[3] = AccountCodec.KIND_ACCOUNT;
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(0));
+        position = Varints.putVarLong(buffer, position, 2);
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(Integer.MAX_VALUE));
+        position = Varints.putRow(buffer, position, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 0, 0);
+        // A one-day step past the last int day: only a crafted snapshot can hold it
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(1) << 1);
+        position = Varints.putVarLong(buffer, position, Varints.zigZag(0));
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer, 0, position);
+        int checksum = (int) crc.getValue();
+        for (int i = 0; i < 4; i++) {
+            buffer[position++] = (byte) (checksum >>> (8 * i));
+        }
+        byte[] crafted = Arrays.copyOf(buffer, position);
+
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.decodeAccount(crafted));
+    }
+
+    private static void assertSameHistory(TransactionLog expected, TransactionLog actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.epochDayAt(i), actual.epochDayAt(i), "day at " + i);
+            assertEquals(expected.amountAt(i), actual.amountAt(i), "amount at " + i);
+            assertEquals(expected.balanceAt(i), actual.balanceAt(i), "balance at " + i);
+        }
+    }
+}
@@ -2,12 +2,17 @@ package org.skypay.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.skypay.exception.IdempotencyKeyConflictException;
 import org.skypay.exception.InsufficientBalanceException;
 import org.skypay.exception.InvalidAmountException;
+import org.skypay.journal.AccountJournal;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -229,6 +234,293 @@ class AccountTest {
         assertEquals(100, account.getBalance());
     }
     
+    @Test
+    void shouldPrintOnlyTransactionsWithinDateRange() {
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.deposite(2000, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 14));
+        account.deposite(100, LocalDate.of(2012, 2, 1));
+        
+        account.printStatement(LocalDate.of(2012, 1, 11), LocalDate.of(2012, 1, 14));
+        
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertEquals("Date        || Amount || Balance", lines[0]);
+        assertTrue(lines[1].startsWith("14/01/2012"));
+        assertTrue(lines[2].startsWith("13/01/2012"));
+    }
+    
+    @Test
+    void shouldPrintDateRangeOfBackDatedHistory() {
+        account.deposite(1000, LocalDate.of(2012, 1, 13));
+        account.deposite(2000, LocalDate.of(2012, 1, 10));
+        account.withdraw(500, LocalDate.of(2012, 1, 20));
+        
+        account.printStatement(LocalDate.of(2012, 1, 1), LocalDate.of(2012, 1, 12));
+        
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("10/01/2012"));
+    }
+    
+    @Test
+    void shouldRejectInvertedDateRange() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> account.printStatement(LocalDate.of(2012, 2, 1), LocalDate.of(2012, 1, 1))
+        );
+    }
+    
+    @Test
+    void shouldPrintStatementPageNewestFirst() {
+        for (int day = 1; day <= 10; day++) {
+            account.deposite(day, LocalDate.of(2012, 1, day));
+        }
+        
+        account.printStatement(2, 3);
+        
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertTrue(lines[1].startsWith("08/01/2012"));
+        assertTrue(lines[3].startsWith("06/01/2012"));
+    }
+    
+    @Test
+    void shouldPrintOnlyHeaderForPageBeyondHistory() {
+        account.deposite(100, LocalDate.of(2012, 1, 1));
+        
+        account.printStatement(5, 10);
+        
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        assertEquals(1, lines.length);
+    }
+    
+    @Test
+    void shouldReturnHistoricalBalanceAtDate() {
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.deposite(2000, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 20));
+        
+        assertEquals(0, account.balanceAt(LocalDate.of(2012, 1, 9)));
+        assertEquals(1000, account.balanceAt(LocalDate.of(2012, 1, 12)));
+        assertEquals(2500, account.balanceAt(LocalDate.of(2012, 1, 13)));
+        assertEquals(2000, account.balanceAt(LocalDate.of(2013, 1, 1)));
+    }
+    
+    @Test
+    void shouldReturnOpeningBalanceBeforeRecoveredHistory() {
+        Account rebuilt = new Account(500, new TransactionLog(), AccountJournal.NONE);
+        assertEquals(500, rebuilt.balanceAt(LocalDate.of(2012, 1, 10)));
+        
+        rebuilt.deposite(100, LocalDate.of(2012, 1, 12));
+        assertEquals(500, rebuilt.balanceAt(LocalDate.of(2012, 1, 11)));
+        assertEquals(600, rebuilt.balanceAt(LocalDate.of(2012, 1, 12)));
+    }
+    
+    @Test
+    void shouldApplyBatchInOrderWithPerItemOutcome() {
+        int[] outcomes = account.applyBatch(new int[] {1000, -300, 0, -5000, 200, Integer.MIN_VALUE}, LocalDate.of(2012, 1, 10));
+        
+        assertArrayEquals(new int[] {
+            TransactionOutcome.APPLIED,
+            TransactionOutcome.APPLIED,
+            TransactionOutcome.INVALID_AMOUNT,
+            TransactionOutcome.INSUFFICIENT_BALANCE,
+            TransactionOutcome.APPLIED,
+            TransactionOutcome.INVALID_AMOUNT
+        }, outcomes);
+        assertEquals(900, account.getBalance());
+        assertEquals(900, account.balanceAt(LocalDate.of(2012, 1, 10)));
+    }
+    
+    @Test
+    void shouldPrintBatchTransactionsLikeSingleOperations() {
+        account.applyBatch(new int[] {1000, 2000, -500}, LocalDate.of(2012, 1, 14));
+        account.printStatement();
+        
+        String[] lines = outputStream.toString().split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertEquals("14/01/2012  || -500   || 2500", lines[1]);
+        assertEquals("14/01/2012  || 1000   || 1000", lines[3]);
+    }
+    
+    @Test
+    void shouldJournalNothingFromBatchThatFailsPartway() {
+        FailingJournal journal = new FailingJournal(3);
+        Account journaled = new Account(journal);
+        
+        assertThrows(IllegalStateException.class,
+            () -> journaled.applyBatch(new int[] {100, 200, 300, 400}, LocalDate.of(2012, 1, 10)));
+        assertEquals(0, journaled.getBalance());
+        
+        journaled.deposite(50, LocalDate.of(2012, 1, 11));
+        assertEquals(List.of(50), journal.committed);
+        assertEquals(50, journaled.getBalance());
+    }
+    
+    @Test
+    void shouldPrintSameStatementAfterCompactingOldHistory() {
+        LocalDate start = LocalDate.of(2012, 1, 1);
+        for (int i = 0; i < 3_000; i++) {
+            account.deposite(10 + i % 90, start.plusDays(i / 10));
+        }
+        int oldBalance = account.balanceAt(start.plusDays(100));
+        account.printStatement();
+        String before = outputStream.toString();
+        outputStream.reset();
+        
+        account.compactHistoryBefore(start.plusDays(250));
+        account.printStatement();
+        
+        assertEquals(before, outputStream.toString());
+        assertEquals(oldBalance, account.balanceAt(start.plusDays(100)));
+    }
+    
+    @Test
+    void shouldReportTryWithdrawOutcomeWithoutThrowing() {
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        
+        long rejected = account.tryWithdraw(5000, LocalDate.of(2012, 1, 11));
+        long invalid = account.tryWithdraw(0, LocalDate.of(2012, 1, 11));
+        long applied = account.tryWithdraw(300, LocalDate.of(2012, 1, 11));
+        
+        assertEquals(TransactionOutcome.INSUFFICIENT_BALANCE, TransactionOutcome.code(rejected));
+        assertEquals(1000, TransactionOutcome.balance(rejected));
+        assertEquals(TransactionOutcome.INVALID_AMOUNT, TransactionOutcome.code(invalid));
+        assertTrue(TransactionOutcome.isApplied(applied));
+        assertEquals(700, TransactionOutcome.balance(applied));
+        assertEquals(700, account.getBalance());
+    }
+    
+    @Test
+    void shouldReportTryDepositOutcomeWithoutThrowing() {
+        long invalid = account.tryDeposit(-10, LocalDate.of(2012, 1, 10));
+        long applied = account.tryDeposit(250, LocalDate.of(2012, 1, 10));
+        
+        assertEquals(TransactionOutcome.INVALID_AMOUNT, TransactionOutcome.code(invalid));
+        assertEquals(0, TransactionOutcome.balance(invalid));
+        assertTrue(TransactionOutcome.isApplied(applied));
+        assertEquals(250, TransactionOutcome.balance(applied));
+    }
+    
+    @Test
+    void shouldNotApplyRetriedDepositTwice() {
+        long first = account.tryDeposit(1000, LocalDate.of(2012, 1, 10), 42L);
+        long retry = account.tryDeposit(1000, LocalDate.of(2012, 1, 10), 42L);
+        account.tryDeposit(500, LocalDate.of(2012, 1, 10), 43L);
+        
+        assertEquals(first, retry);
+        assertEquals(1500, account.getBalance());
+        assertEquals(1000, TransactionOutcome.balance(retry));
+    }
+    
+    @Test
+    void shouldRetryRejectedWithdrawalAsNewRequest() {
+        account.deposite(100, LocalDate.of(2012, 1, 10));
+        
+        assertThrows(InsufficientBalanceException.class,
+            () -> account.withdraw(300, LocalDate.of(2012, 1, 11), 7L));
+        account.deposite(1000, LocalDate.of(2012, 1, 12));
+        account.withdraw(300, LocalDate.of(2012, 1, 11), 7L);
+        account.withdraw(300, LocalDate.of(2012, 1, 11), 7L);
+        
+        assertEquals(800, account.getBalance());
+    }
+    
+    @Test
+    void shouldRefuseKeyReusedForDifferentRequest() {
+        account.tryDeposit(1000, LocalDate.of(2012, 1, 10), 42L);
+        
+        assertThrows(IdempotencyKeyConflictException.class,
+            () -> account.tryWithdraw(1000, LocalDate.of(2012, 1, 10), 42L));
+        assertThrows(IdempotencyKeyConflictException.class,
+            () -> account.tryDeposit(999, LocalDate.of(2012, 1, 10), 42L));
+        assertThrows(IdempotencyKeyConflictException.class,
+            () -> account.deposite(1000, LocalDate.of(2012, 1, 11), 42L));
+        assertEquals(1000, account.getBalance());
+    }
+    
+    @Test
+    void shouldSummarizeEachMonthWithTransactions() {
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.deposite(2000, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 14));
+        account.applyBatch(new int[] {300, -800, -5000}, LocalDate.of(2012, 3, 1));
+        
+        List<MonthlySummary> summaries = account.monthlySummaries();
+        
+        assertEquals(2, summaries.size());
+        assertEquals(YearMonth.of(2012, 1), summaries.get(0).getMonth());
+        assertEquals(3000, summaries.get(0).getDeposits());
+        assertEquals(500, summaries.get(0).getWithdrawals());
+        assertEquals(2500, summaries.get(0).getClosingBalance());
+        assertEquals(3, summaries.get(0).getTransactionCount());
+        assertEquals(YearMonth.of(2012, 3), summaries.get(1).getMonth());
+        assertEquals(300, summaries.get(1).getDeposits());
+        assertEquals(800, summaries.get(1).getWithdrawals());
+        assertEquals(2000, summaries.get(1).getClosingBalance());
+        assertEquals(2, summaries.get(1).getTransactionCount());
+    }
+    
+    @Test
+    void shouldSummarizeOnlyMonthsInRange() {
+        account.deposite(100, LocalDate.of(2011, 12, 31));
+        account.deposite(200, LocalDate.of(2012, 1, 1));
+        account.deposite(400, LocalDate.of(2012, 2, 29));
+        
+        List<MonthlySummary> summaries = account.monthlySummaries(YearMonth.of(2012, 1), YearMonth.of(2012, 6));
+        
+        assertEquals(2, summaries.size());
+        assertEquals(YearMonth.of(2012, 1), summaries.get(0).getMonth());
+        assertEquals(YearMonth.of(2012, 2), summaries.get(1).getMonth());
+        assertEquals(700, summaries.get(1).getClosingBalance());
+        assertThrows(IllegalArgumentException.class,
+            () -> account.monthlySummaries(YearMonth.of(2012, 2), YearMonth.of(2012, 1)));
+    }
+    
+    @Test
+    void shouldRollUpRecoveredHistory() {
+        TransactionLog history = new TransactionLog();
+        history.append(LocalDate.of(2012, 1, 10), 1000, 1000);
+        history.append(LocalDate.of(2012, 2, 10), -400, 600);
+        
+        Account recovered = new Account(history, AccountJournal.NONE);
+        recovered.deposite(50, LocalDate.of(2012, 2, 11));
+        
+        List<MonthlySummary> summaries = recovered.monthlySummaries();
+        assertEquals(1000, summaries.get(0).getDeposits());
+        assertEquals(50, summaries.get(1).getDeposits());
+        assertEquals(400, summaries.get(1).getWithdrawals());
+        assertEquals(650, summaries.get(1).getClosingBalance());
+    }
+    
+    @Test
+    void shouldPrintSameStatementFromOffHeapHistory() {
+        Account offHeap = new Account(TransactionLog.offHeap(), AccountJournal.NONE);
+        for (Account target : new Account[] {account, offHeap}) {
+            target.deposite(1000, LocalDate.of(2012, 1, 10));
+            target.deposite(2000, LocalDate.of(2012, 1, 13));
+            target.withdraw(500, LocalDate.of(2012, 1, 14));
+        }
+        
+        account.printStatement();
+        String onHeapStatement = outputStream.toString();
+        outputStream.reset();
+        offHeap.printStatement();
+        
+        assertEquals(onHeapStatement, outputStream.toString());
+        assertEquals(3000, offHeap.balanceAt(LocalDate.of(2012, 1, 13)));
+    }
+    
+    @Test
+    void shouldPackNegativeBalanceWithoutCorruptingCode() {
+        long result = TransactionOutcome.of(TransactionOutcome.INSUFFICIENT_BALANCE, -42);
+        
+        assertEquals(TransactionOutcome.INSUFFICIENT_BALANCE, TransactionOutcome.code(result));
+        assertEquals(-42, TransactionOutcome.balance(result));
+    }
+    
     @Test
     void acceptanceTest() {
         // Given: deposit 1000 on 10-01-2012, deposit 2000 on 13-01-2012, withdraw 500 on 14-01-2012
@@ -255,6 +547,37 @@ class AccountTest {
         assertTrue(lines[3].contains("1000"));
     }
     
+    // Keeps committed amounts in memory and fails the Nth record
+    private static final class FailingJournal implements AccountJournal {
+        
+        final List<Integer> committed = new ArrayList<>();
+        private final List<Integer> pending = new ArrayList<>();
+        private int recordsLeft;
+        
+        FailingJournal(int failingRecord) {
+            this.recordsLeft = failingRecord;
+        }
+        
+        @Override
+        public void record(int epochDay, int amount, int balance) {
+            if (--recordsLeft == 0) {
+                throw new IllegalStateException("Injected record failure");
+            }
+            pending.add(amount);
+        }
+        
+        @Override
+        public void commit() {
+            committed.addAll(pending);
+            pending.clear();
+        }
+        
+        @Override
+        public void abort() {
+            pending.clear();
+        }
+    }
+    
     @org.junit.jupiter.api.AfterEach
     void restoreSystemOut() {
         System.setOut(originalOut);
@@ -0,0 +1,234 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.exception.InvalidAmountException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentAccountTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void shouldBehaveLikeAccountForSingleThread() {
+        ConcurrentAccount account = new ConcurrentAccount();
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.deposite(2000, LocalDate.of(2012, 1, 13));
+        account.withdraw(500, LocalDate.of(2012, 1, 14));
+
+        TransactionLog transactions = account.getTransactions();
+
+        assertEquals(2500, account.getBalance());
+        assertEquals(3, transactions.size());
+        assertEquals(LocalDate.of(2012, 1, 14), transactions.dateAt(2));
+        assertEquals(-500, transactions.amountAt(2));
+        assertEquals(2500, transactions.balanceAt(2));
+    }
+
+    @Test
+    void shouldCopyOnlyMostRecentTransactions() {
+        ConcurrentAccount account = new ConcurrentAccount();
+        for (int i = 1; i <= 40; i++) {
+            account.deposite(i, LocalDate.of(2012, 1, 10));
+        }
+
+        TransactionLog recent = account.getRecentTransactions(3);
+
+        assertEquals(3, recent.size());
+        assertEquals(38, recent.amountAt(0));
+        assertEquals(820, recent.balanceAt(2));
+        assertEquals(40, account.getRecentTransactions(100).size());
+    }
+
+    @Test
+    void shouldRejectInvalidAmountsAndOverdrafts() {
+        ConcurrentAccount account = new ConcurrentAccount();
+        account.deposite(100);
+
+        assertThrows(InvalidAmountException.class, () -> account.deposite(0));
+        assertThrows(InvalidAmountException.class, () -> account.withdraw(-1));
+        assertThrows(InsufficientBalanceException.class, () -> account.withdraw(200));
+        assertEquals(100, account.getBalance());
+        assertEquals(1, account.getTransactionCount());
+    }
+
+    @Test
+    void shouldNotLoseConcurrentDeposits() throws InterruptedException {
+        ConcurrentAccount account = new ConcurrentAccount();
+        int perThread = 10_000;
+
+        runConcurrently(() -> {
+            for (int i = 0; i < perThread; i++) {
+                account.deposite(1, LocalDate.of(2012, 1, 10));
+            }
+        });
+
+        assertEquals(THREADS * perThread, account.getBalance());
+        assertEquals(THREADS * perThread, account.getTransactionCount());
+        assertRunningBalancesConsistent(account.getTransactions());
+    }
+
+    @Test
+    void shouldNeverOverdrawUnderConcurrentWithdrawals() throws InterruptedException {
+        ConcurrentAccount account = new ConcurrentAccount();
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        AtomicInteger succeeded = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < 500; i++) {
+                try {
+                    account.withdraw(1, LocalDate.of(2012, 1, 11));
+                    succeeded.incrementAndGet();
+                } catch (InsufficientBalanceException e) {
+                    // Expected once the balance is exhausted
+                }
+            }
+        });
+
+        assertEquals(1000, succeeded.get());
+        assertEquals(0, account.getBalance());
+        assertRunningBalancesConsistent(account.getTransactions());
+    }
+
+    @Test
+    void shouldTransferBetweenAccounts() {
+        ConcurrentAccount from = new ConcurrentAccount();
+        ConcurrentAccount to = new ConcurrentAccount();
+        from.deposite(1000, LocalDate.of(2012, 1, 10));
+
+        ConcurrentAccount.transfer(from, to, 400, LocalDate.of(2012, 1, 11));
+
+        assertEquals(600, from.getBalance());
+        assertEquals(400, to.getBalance());
+        assertEquals(-400, from.getTransactions().amountAt(1));
+        assertEquals(400, to.getTransactions().amountAt(0));
+        assertEquals(LocalDate.of(2012, 1, 11), to.getTransactions().dateAt(0));
+    }
+
+    @Test
+    void shouldLeaveBothAccountsUntouchedWhenTransferIsRejected() {
+        ConcurrentAccount from = new ConcurrentAccount();
+        ConcurrentAccount to = new ConcurrentAccount();
+        from.deposite(100);
+
+        assertThrows(InsufficientBalanceException.class, () -> ConcurrentAccount.transfer(from, to, 200));
+        assertThrows(InvalidAmountException.class, () -> ConcurrentAccount.transfer(from, to, 0));
+        assertThrows(IllegalArgumentException.class, () -> ConcurrentAccount.transfer(from, from, 10));
+
+        assertEquals(100, from.getBalance());
+        assertEquals(1, from.getTransactionCount());
+        assertEquals(0, to.getTransactionCount());
+
+        // Both locks were released
+        to.deposite(5);
+        from.withdraw(5);
+    }
+
+    @Test
+    void shouldConserveMoneyUnderOpposingConcurrentTransfers() throws InterruptedException {
+        ConcurrentAccount[] accounts = new ConcurrentAccount[4];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new ConcurrentAccount();
+            accounts[i].deposite(1000);
+        }
+
+        // Every thread moves money both ways around the same accounts, mixed with plain deposits
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                ConcurrentAccount from = accounts[i % accounts.length];
+                ConcurrentAccount to = accounts[(i * 7 + 1) % accounts.length];
+                if (from == to) {
+                    from.deposite(1);
+                    continue;
+                }
+                try {
+                    ConcurrentAccount.transfer(from, to, 1 + i % 50);
+                } catch (InsufficientBalanceException e) {
+                    // Expected once an account runs dry
+                }
+            }
+        });
+
+        int total = 0;
+        int deposits = 0;
+        for (ConcurrentAccount account : accounts) {
+            total += account.getBalance();
+            assertRunningBalancesConsistent(account.getTransactions());
+        }
+        for (int i = 0; i < 10_000; i++) {
+            if (i % accounts.length == (i * 7 + 1) % accounts.length) {
+                deposits++;
+            }
+        }
+        assertEquals(accounts.length * 1000 + THREADS * deposits, total);
+    }
+
+    @Test
+    void shouldNeverShowTransferredMoneyTwiceToReaders() throws InterruptedException {
+        ConcurrentAccount from = new ConcurrentAccount();
+        ConcurrentAccount to = new ConcurrentAccount();
+        from.deposite(1_000_000);
+        AtomicInteger duplicated = new AtomicInteger();
+        AtomicInteger transfersLeft = new AtomicInteger(THREADS - 1);
+
+        // Money only moves from -> to, so reading to before from can miss a transfer but never count one twice
+        runConcurrently(() -> {
+            if (transfersLeft.getAndDecrement() > 0) {
+                for (int i = 0; i < 20_000; i++) {
+                    ConcurrentAccount.transfer(from, to, 1);
+                }
+                return;
+            }
+            for (int i = 0; i < 200_000; i++) {
+                int seenByTo = to.getBalance();
+                if (seenByTo + from.getBalance() > 1_000_000) {
+                    duplicated.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, duplicated.get());
+        assertEquals(1_000_000, from.getBalance() + to.getBalance());
+        assertEquals(to.getBalance(), to.getTransactionCount());
+    }
+
+    private static void assertRunningBalancesConsistent(TransactionLog transactions) {
+        int balance = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            balance += transactions.amountAt(i);
+            assertEquals(balance, transactions.balanceAt(i), "Running balance broken at row " + i);
+            assertTrue(balance >= 0);
+        }
+    }
+
+    private static void runConcurrently(Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
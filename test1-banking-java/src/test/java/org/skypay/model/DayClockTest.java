@@ -0,0 +1,109 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.exception.IdempotencyKeyConflictException;
+import org.skypay.journal.AccountJournal;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayClockTest {
+
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    @Test
+    void shouldReturnTodayAsEpochDay() {
+        MutableClock clock = new MutableClock(at(LocalDateTime.of(2012, 1, 10, 9, 30)), PARIS);
+
+        DayClock dayClock = new DayClock(clock);
+
+        assertEquals(LocalDate.of(2012, 1, 10).toEpochDay(), dayClock.today());
+    }
+
+    @Test
+    void shouldRollOverAtMidnightInItsZone() {
+        MutableClock clock = new MutableClock(at(LocalDateTime.of(2012, 1, 10, 23, 59, 59)), PARIS);
+        DayClock dayClock = new DayClock(clock);
+
+        assertEquals(LocalDate.of(2012, 1, 10).toEpochDay(), dayClock.today());
+
+        clock.instant = at(LocalDateTime.of(2012, 1, 11, 0, 0));
+        assertEquals(LocalDate.of(2012, 1, 11).toEpochDay(), dayClock.today());
+    }
+
+    @Test
+    void shouldHandleDaysShortenedByDaylightSavingTime() {
+        // 2012-03-25 in Paris lasts 23 hours
+        MutableClock clock = new MutableClock(at(LocalDateTime.of(2012, 3, 25, 12, 0)), PARIS);
+        DayClock dayClock = new DayClock(clock);
+
+        clock.instant = at(LocalDateTime.of(2012, 3, 25, 23, 30));
+        assertEquals(LocalDate.of(2012, 3, 25).toEpochDay(), dayClock.today());
+
+        clock.instant = at(LocalDateTime.of(2012, 3, 26, 0, 0));
+        assertEquals(LocalDate.of(2012, 3, 26).toEpochDay(), dayClock.today());
+    }
+
+    @Test
+    void shouldDateAccountOperationsWithItsDay() {
+        MutableClock clock = new MutableClock(at(LocalDateTime.of(2012, 1, 10, 9, 0)), PARIS);
+        Account account = new Account(0, new TransactionLog(), AccountJournal.NONE, new DayClock(clock));
+
+        account.deposite(1000);
+        clock.instant = at(LocalDateTime.of(2012, 1, 13, 9, 0));
+        account.withdraw(300);
+
+        assertEquals(1000, account.balanceAt(LocalDate.of(2012, 1, 12)));
+        assertEquals(700, account.balanceAt(LocalDate.of(2012, 1, 13)));
+    }
+
+    @Test
+    void shouldReplayUndatedKeyedRetryAfterMidnight() {
+        MutableClock clock = new MutableClock(at(LocalDateTime.of(2012, 1, 10, 23, 59, 59)), PARIS);
+        Account account = new Account(0, new TransactionLog(), AccountJournal.NONE, new DayClock(clock));
+
+        long first = account.tryDeposit(100, 42L);
+        clock.instant = at(LocalDateTime.of(2012, 1, 11, 0, 0, 1));
+        long retry = account.tryDeposit(100, 42L);
+
+        assertEquals(first, retry);
+        assertEquals(100, account.getBalance());
+        assertEquals(100, account.balanceAt(LocalDate.of(2012, 1, 10)));
+        assertThrows(IdempotencyKeyConflictException.class, () -> account.tryWithdraw(100, 42L));
+    }
+
+    private static Instant at(LocalDateTime time) {
+        return time.atZone(PARIS).toInstant();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        Instant instant;
+        private final ZoneId zone;
+
+        MutableClock(Instant instant, ZoneId zone) {
+            this.instant = instant;
+            this.zone = zone;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new MutableClock(instant, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
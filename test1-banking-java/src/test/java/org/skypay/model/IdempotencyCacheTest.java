@@ -0,0 +1,209 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.exception.IdempotencyKeyConflictException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private static final int DEPOSIT = 1;
+    private static final int WITHDRAWAL = 2;
+    private static final int DAY = 15_349;
+
+    @Test
+    void shouldRunOperationOncePerKey() {
+        IdempotencyCache cache = new IdempotencyCache();
+        AtomicInteger runs = new AtomicInteger();
+
+        long first = cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> runs.incrementAndGet() * 100L);
+        long retry = cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> runs.incrementAndGet() * 100L);
+        long other = cache.getOrCompute(43L, DEPOSIT, 100, DAY, () -> runs.incrementAndGet() * 100L);
+
+        assertEquals(100L, first);
+        assertEquals(100L, retry);
+        assertEquals(200L, other);
+        assertEquals(2, runs.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void shouldRefuseKeyReusedForDifferentRequest() {
+        IdempotencyCache cache = new IdempotencyCache();
+        cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> 100L);
+
+        assertThrows(IdempotencyKeyConflictException.class, () -> cache.getOrCompute(42L, WITHDRAWAL, 100, DAY, () -> 0L));
+        assertThrows(IdempotencyKeyConflictException.class, () -> cache.getOrCompute(42L, DEPOSIT, 200, DAY, () -> 300L));
+        assertThrows(IdempotencyKeyConflictException.class, () -> cache.getOrCompute(42L, DEPOSIT, 100, DAY + 1, () -> 200L));
+        assertEquals(100L, cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> 200L));
+    }
+
+    @Test
+    void shouldNotRememberRejectedOutcomes() {
+        IdempotencyCache cache = new IdempotencyCache();
+        long rejected = TransactionOutcome.of(TransactionOutcome.INSUFFICIENT_BALANCE, 100);
+
+        assertEquals(rejected, cache.getOrCompute(42L, WITHDRAWAL, 300, DAY, () -> rejected));
+        assertEquals(0, cache.size());
+        assertEquals(700L, cache.getOrCompute(42L, WITHDRAWAL, 300, DAY, () -> 700L));
+        assertEquals(700L, cache.getOrCompute(42L, WITHDRAWAL, 300, DAY, () -> 400L));
+    }
+
+    @Test
+    void shouldForgetKeysAfterTimeToLive() {
+        MutableClock clock = new MutableClock(Instant.parse("2012-01-10T09:00:00Z"));
+        IdempotencyCache cache = new IdempotencyCache(16, Duration.ofMinutes(10), clock);
+
+        cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> 1L);
+        clock.instant = clock.instant.plus(Duration.ofMinutes(9));
+        assertEquals(1L, cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> 2L));
+
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        assertEquals(2L, cache.getOrCompute(42L, WITHDRAWAL, 100, DAY, () -> 2L));
+    }
+
+    @Test
+    void shouldNotRememberFailedOperations() {
+        IdempotencyCache cache = new IdempotencyCache();
+
+        assertThrows(IllegalStateException.class, () -> cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> {
+            throw new IllegalStateException("journal unavailable");
+        }));
+
+        assertEquals(7L, cache.getOrCompute(42L, DEPOSIT, 100, DAY, () -> 7L));
+    }
+
+    @Test
+    void shouldStartSmallAndGrowToCapacity() {
+        IdempotencyCache cache = new IdempotencyCache(4096, Duration.ofHours(1));
+        assertEquals(0, cache.allocatedSlots());
+
+        cache.getOrCompute(1L, DEPOSIT, 100, DAY, () -> 1L);
+        assertTrue(cache.allocatedSlots() <= 8);
+
+        for (long key = 0; key < 4096; key++) {
+            long value = key;
+            cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> value);
+        }
+        assertEquals(4096, cache.size());
+        assertTrue(cache.allocatedSlots() <= 2 * 4096);
+    }
+
+    @Test
+    void shouldAnswerEveryKeyUpToCapacity() {
+        IdempotencyCache cache = new IdempotencyCache();
+
+        for (long key = 0; key < 4096; key++) {
+            long value = key + 1;
+            cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> value);
+        }
+
+        for (long key = 0; key < 4096; key++) {
+            assertEquals(key + 1, cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> 0L), "key " + key);
+        }
+    }
+
+    @Test
+    void shouldReuseExpiredEntriesBeforeEvictingLiveOnes() {
+        MutableClock clock = new MutableClock(Instant.parse("2012-01-10T09:00:00Z"));
+        IdempotencyCache cache = new IdempotencyCache(256, Duration.ofMinutes(10), clock);
+
+        for (long key = 0; key < 256; key++) {
+            cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> 1L);
+        }
+        clock.instant = clock.instant.plus(Duration.ofMinutes(10));
+        for (long key = 1000; key < 1256; key++) {
+            long value = key;
+            cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> value);
+        }
+
+        assertEquals(256, cache.size());
+        for (long key = 1000; key < 1256; key++) {
+            assertEquals(key, cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> 0L));
+        }
+    }
+
+    @Test
+    void shouldStayWithinCapacity() {
+        IdempotencyCache cache = new IdempotencyCache(256, Duration.ofHours(1));
+
+        for (long key = 0; key < 100_000; key++) {
+            long value = key;
+            assertEquals(value, cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> value));
+        }
+
+        assertTrue(cache.size() <= 256);
+        // The most recent key has just been written, so it survives whatever was evicted
+        assertEquals(99_999L, cache.getOrCompute(99_999L, DEPOSIT, 100, DAY, () -> 1L));
+    }
+
+    @Test
+    void shouldRunOperationOnceUnderConcurrentRetries() throws InterruptedException {
+        IdempotencyCache cache = new IdempotencyCache(1 << 16, Duration.ofHours(1));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long key = 0; key < 1000; key++) {
+                    cache.getOrCompute(key, DEPOSIT, 100, DAY, () -> runs.incrementAndGet());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, runs.get());
+    }
+
+    @Test
+    void shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(16, Duration.ZERO));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
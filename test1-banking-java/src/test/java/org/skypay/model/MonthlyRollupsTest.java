@@ -0,0 +1,80 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonthlyRollupsTest {
+
+    @Test
+    void shouldKeepMonthsOrderedWhenBackDated() {
+        MonthlyRollups rollups = new MonthlyRollups();
+
+        rollups.record(day(2012, 3, 5), 100, 100);
+        rollups.record(day(2012, 1, 20), 200, 300);
+        rollups.record(day(2012, 3, 31), -50, 250);
+        rollups.record(day(2012, 2, 1), 10, 260);
+
+        List<MonthlySummary> summaries = rollups.all();
+        assertEquals(3, rollups.size());
+        assertEquals(YearMonth.of(2012, 1), summaries.get(0).getMonth());
+        assertEquals(YearMonth.of(2012, 2), summaries.get(1).getMonth());
+        assertEquals(YearMonth.of(2012, 3), summaries.get(2).getMonth());
+        assertEquals(100, summaries.get(2).getDeposits());
+        assertEquals(50, summaries.get(2).getWithdrawals());
+        assertEquals(250, summaries.get(2).getClosingBalance());
+        assertEquals(300, summaries.get(0).getClosingBalance());
+    }
+
+    @Test
+    void shouldSplitMonthsAtTheirLastDay() {
+        MonthlyRollups rollups = new MonthlyRollups();
+
+        // 2012 is a leap year: February ends on the 29th
+        rollups.record(day(2012, 2, 1), 1, 1);
+        rollups.record(day(2012, 2, 29), 1, 2);
+        rollups.record(day(2012, 3, 1), 1, 3);
+        rollups.record(day(2012, 12, 31), 1, 4);
+        rollups.record(day(2013, 1, 1), 1, 5);
+
+        List<MonthlySummary> summaries = rollups.all();
+        assertEquals(4, summaries.size());
+        assertEquals(2, summaries.get(0).getTransactionCount());
+        assertEquals(YearMonth.of(2013, 1), summaries.get(3).getMonth());
+    }
+
+    @Test
+    void shouldGrowPastInitialCapacity() {
+        MonthlyRollups rollups = new MonthlyRollups();
+        LocalDate start = LocalDate.of(2000, 1, 15);
+
+        for (int i = 0; i < 600; i++) {
+            rollups.record(Math.toIntExact(start.plusMonths(i).toEpochDay()), 10, (i + 1) * 10);
+        }
+
+        assertEquals(600, rollups.size());
+        List<MonthlySummary> window = rollups.between(YearMonth.of(2010, 1), YearMonth.of(2010, 12));
+        assertEquals(12, window.size());
+        assertEquals(1210, window.get(0).getClosingBalance());
+    }
+
+    @Test
+    void shouldHandleMonthsBeforeYearZero() {
+        MonthlyRollups rollups = new MonthlyRollups();
+
+        rollups.record(day(-1, 12, 31), 5, 5);
+        rollups.record(day(0, 1, 1), 5, 10);
+
+        List<MonthlySummary> summaries = rollups.all();
+        assertEquals(YearMonth.of(-1, 12), summaries.get(0).getMonth());
+        assertEquals(YearMonth.of(0, 1), summaries.get(1).getMonth());
+    }
+
+    private static int day(int year, int month, int dayOfMonth) {
+        return Math.toIntExact(LocalDate.of(year, month, dayOfMonth).toEpochDay());
+    }
+}
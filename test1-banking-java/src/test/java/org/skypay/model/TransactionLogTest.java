@@ -0,0 +1,257 @@
+package org.skypay.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionLogTest {
+
+    @Test
+    void shouldStartEmpty() {
+        TransactionLog log = new TransactionLog();
+
+        assertEquals(0, log.size());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    void shouldStoreColumnsForEachRow() {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(2012, 1, 10), 1000, 1000);
+        log.append(LocalDate.of(2012, 1, 14), -500, 500);
+
+        assertEquals(2, log.size());
+        assertEquals(LocalDate.of(2012, 1, 14), log.dateAt(1));
+        assertEquals(LocalDate.of(2012, 1, 14).toEpochDay(), log.epochDayAt(1));
+        assertEquals(-500, log.amountAt(1));
+        assertEquals(500, log.balanceAt(1));
+    }
+
+    @Test
+    void shouldGrowBeyondInitialCapacity() {
+        TransactionLog log = new TransactionLog(0);
+
+        for (int i = 1; i <= 10_000; i++) {
+            log.append(i, 1, i);
+        }
+
+        assertEquals(10_000, log.size());
+        assertEquals(1, log.epochDayAt(0));
+        assertEquals(10_000, log.balanceAt(9_999));
+    }
+
+    @Test
+    void shouldMaterializeTransactionAtIndex() {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(2012, 1, 13), 2000, 3000);
+
+        Transaction transaction = log.get(0);
+
+        assertEquals(LocalDate.of(2012, 1, 13), transaction.getDate());
+        assertEquals(2000, transaction.getAmount());
+        assertEquals(3000, transaction.getBalance());
+    }
+
+    @Test
+    void shouldRejectIndexOutsideRecordedRows() {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(2012, 1, 10), 1000, 1000);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> log.amountAt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.get(-1));
+    }
+
+    @Test
+    void shouldLocateDateWindowByBinarySearch() {
+        TransactionLog log = new TransactionLog();
+        log.append(10, 1, 1);
+        log.append(12, 1, 2);
+        log.append(12, 1, 3);
+        log.append(15, 1, 4);
+
+        assertEquals(0, log.firstIndexOnOrAfter(5));
+        assertEquals(1, log.firstIndexOnOrAfter(12));
+        assertEquals(3, log.firstIndexAfter(12));
+        assertEquals(3, log.firstIndexOnOrAfter(13));
+        assertEquals(4, log.firstIndexAfter(15));
+    }
+
+    @Test
+    void shouldRefuseBinarySearchOnBackDatedLog() {
+        TransactionLog log = new TransactionLog();
+        log.append(10, 1, 1);
+        log.append(9, 1, 2);
+
+        assertFalse(log.isChronological());
+        assertThrows(IllegalStateException.class, () -> log.firstIndexAfter(9));
+    }
+
+    @Test
+    void shouldMatchLinearSearchAcrossManyBlocks() {
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < 10_000; i++) {
+            log.append(i / 7, 1, i + 1);
+        }
+
+        for (int epochDay = -1; epochDay <= 10_000 / 7 + 1; epochDay++) {
+            int expected = 0;
+            while (expected < log.size() && log.epochDayAt(expected) <= epochDay) {
+                expected++;
+            }
+            assertEquals(expected, log.firstIndexAfter(epochDay), "epoch day " + epochDay);
+        }
+    }
+
+    @Test
+    void shouldReadCompactedRowsBackUnchanged() {
+        TransactionLog log = new TransactionLog();
+        TransactionLog reference = new TransactionLog();
+        int balance = 0;
+        for (int i = 0; i < 5_000; i++) {
+            int amount = i % 3 == 0 ? -(i % 200) - 1 : 100 + i;
+            balance += amount;
+            // Every 500th balance does not follow from the previous one, as after a recovered snapshot
+            int recorded = i % 500 == 0 ? balance + 7 : balance;
+            log.append(15_000 + i / 4, amount, recorded);
+            reference.append(15_000 + i / 4, amount, recorded);
+        }
+
+        log.compactBefore(4_500);
+
+        assertEquals(4 * 1024, log.coldSize());
+        assertEquals(5_000, log.size());
+        for (int i = log.size() - 1; i >= 0; i--) {
+            assertEquals(reference.epochDayAt(i), log.epochDayAt(i), "day at " + i);
+            assertEquals(reference.amountAt(i), log.amountAt(i), "amount at " + i);
+            assertEquals(reference.balanceAt(i), log.balanceAt(i), "balance at " + i);
+        }
+    }
+
+    @Test
+    void shouldKeepSearchingAndAppendingAfterCompaction() {
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < 3_000; i++) {
+            log.append(i / 7, 1, i + 1);
+        }
+
+        log.compactBefore(2_048);
+        log.append(3_000 / 7, 1, 3_001);
+
+        assertEquals(2_048, log.coldSize());
+        assertEquals(3_001, log.size());
+        assertEquals(3_001, log.balanceAt(3_000));
+        for (int epochDay = 0; epochDay <= 3_000 / 7; epochDay += 13) {
+            int expected = 0;
+            while (expected < log.size() && log.epochDayAt(expected) <= epochDay) {
+                expected++;
+            }
+            assertEquals(expected, log.firstIndexAfter(epochDay), "epoch day " + epochDay);
+        }
+    }
+
+    @Test
+    void shouldStoreTypicalHistoryInFewBytesPerRow() {
+        TransactionLog log = new TransactionLog();
+        int balance = 0;
+        for (int i = 0; i < 100 * 1024; i++) {
+            int amount = i % 4 == 3 ? -50 : 25;
+            balance += amount;
+            log.append(15_000 + i / 3, amount, balance);
+        }
+
+        log.compactBefore(log.size());
+
+        assertEquals(log.size(), log.coldSize());
+        // Twelve bytes per row in the hot arrays, two here: one header byte and a one-byte amount
+        assertTrue(log.coldBytes() <= 2L * log.size(), "cold bytes " + log.coldBytes());
+        assertEquals(balance, log.balanceAt(log.size() - 1));
+    }
+
+    @Test
+    void shouldKeepBackDatedRowsWhenCompacting() {
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < 2_048; i++) {
+            log.append(i % 2 == 0 ? 100 : 90, 1, i + 1);
+        }
+
+        log.compactBefore(2_048);
+
+        assertFalse(log.isChronological());
+        assertEquals(90, log.epochDayAt(2_047));
+        assertEquals(100, log.epochDayAt(0));
+        assertEquals(2_048, log.balanceAt(2_047));
+    }
+
+    @Test
+    void shouldIgnoreCompactionShorterThanOneSegment() {
+        TransactionLog log = new TransactionLog();
+        log.append(1, 1, 1);
+
+        log.compactBefore(1);
+
+        assertEquals(0, log.coldSize());
+        assertThrows(IndexOutOfBoundsException.class, () -> log.compactBefore(2));
+    }
+
+    @Test
+    void shouldStoreRowsOffHeapAcrossSlabs() {
+        TransactionLog log = TransactionLog.offHeap();
+        TransactionLog reference = new TransactionLog();
+        int rows = OffHeapRowStore.SLAB_ROWS * 2 + 100;
+        for (int i = 0; i < rows; i++) {
+            log.append(15_000 + i / 50, i % 5 == 0 ? -3 : 7, i * 2 - 1);
+            reference.append(15_000 + i / 50, i % 5 == 0 ? -3 : 7, i * 2 - 1);
+        }
+
+        assertTrue(log.isOffHeap());
+        assertFalse(reference.isOffHeap());
+        assertEquals(3L * OffHeapRowStore.SLAB_ROWS * OffHeapRowStore.RECORD_SIZE, log.hotBytes());
+        for (int i = 0; i < rows; i += 97) {
+            assertEquals(reference.get(i).getEpochDay(), log.get(i).getEpochDay(), "day at " + i);
+            assertEquals(reference.amountAt(i), log.amountAt(i), "amount at " + i);
+            assertEquals(reference.balanceAt(i), log.balanceAt(i), "balance at " + i);
+        }
+        assertEquals(reference.firstIndexAfter(15_100), log.firstIndexAfter(15_100));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.amountAt(rows));
+    }
+
+    @Test
+    void shouldGrowFirstOffHeapSlabWithHistory() {
+        TransactionLog log = TransactionLog.offHeap();
+        log.append(15_000, 100, 100);
+
+        assertEquals((long) OffHeapRowStore.FIRST_SLAB_ROWS * OffHeapRowStore.RECORD_SIZE, log.hotBytes());
+
+        for (int i = 1; i < 1_000; i++) {
+            log.append(15_000, 100, 100 * (i + 1));
+        }
+
+        assertEquals(1024L * OffHeapRowStore.RECORD_SIZE, log.hotBytes());
+        for (int i = 0; i < 1_000; i += 37) {
+            assertEquals(100 * (i + 1), log.balanceAt(i), "balance at " + i);
+        }
+    }
+
+    @Test
+    void shouldReleaseOffHeapSlabsWhenCompacting() {
+        TransactionLog log = TransactionLog.offHeap();
+        int rows = OffHeapRowStore.SLAB_ROWS + 5_000;
+        log.ensureCapacity(rows);
+        for (int i = 0; i < rows; i++) {
+            log.append(15_000 + i / 10, 1, i + 1);
+        }
+
+        log.compactBefore(OffHeapRowStore.SLAB_ROWS + 2_048);
+        log.append(15_000 + rows / 10, 1, rows + 1);
+
+        assertEquals(OffHeapRowStore.SLAB_ROWS + 2_048, log.coldSize());
+        assertEquals((long) OffHeapRowStore.SLAB_ROWS * OffHeapRowStore.RECORD_SIZE, log.hotBytes());
+        for (int i = 0; i <= rows; i += 511) {
+            assertEquals(i + 1, log.balanceAt(i), "balance at " + i);
+        }
+        assertEquals(rows + 1, log.balanceAt(rows));
+    }
+
+}
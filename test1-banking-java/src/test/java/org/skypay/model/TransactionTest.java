@@ -53,4 +53,12 @@ class TransactionTest {
         assertEquals(1, transaction.getDate().getMonthValue());
         assertEquals(10, transaction.getDate().getDayOfMonth());
     }
+    
+    @Test
+    void shouldKeepDateAsEpochDay() {
+        Transaction transaction = new Transaction((int) LocalDate.of(2012, 1, 10).toEpochDay(), 1000, 1000);
+        
+        assertEquals(15349, transaction.getEpochDay());
+        assertEquals(LocalDate.of(2012, 1, 10), transaction.getDate());
+    }
 }
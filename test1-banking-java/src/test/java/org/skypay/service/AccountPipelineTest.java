@@ -0,0 +1,174 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.journal.WalAccountJournal;
+import org.skypay.journal.WriteAheadLog;
+import org.skypay.model.TransactionLog;
+import org.skypay.model.TransactionOutcome;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountPipelineTest {
+
+    private static final LocalDate DATE = LocalDate.of(2012, 1, 10);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldApplyCommandsInSubmissionOrder() throws Exception {
+        List<Long> results = new ArrayList<>();
+        AccountPipeline pipeline = new AccountPipeline(1, 8, (accountId, tag, result) -> results.add(result));
+
+        pipeline.deposit(1L, 1000, DATE, 0);
+        pipeline.withdraw(1L, 300, DATE, 1);
+        pipeline.withdraw(1L, 5000, DATE, 2);
+        pipeline.deposit(1L, 0, DATE, 3);
+        pipeline.close();
+
+        assertEquals(4, results.size());
+        assertEquals(1000, TransactionOutcome.balance(results.get(0)));
+        assertEquals(700, TransactionOutcome.balance(results.get(1)));
+        assertEquals(TransactionOutcome.INSUFFICIENT_BALANCE, TransactionOutcome.code(results.get(2)));
+        assertEquals(TransactionOutcome.INVALID_AMOUNT, TransactionOutcome.code(results.get(3)));
+    }
+
+    @Test
+    void shouldKeepBalancesConsistentUnderConcurrentProducers() throws Exception {
+        int producers = 8;
+        int perProducer = 20_000;
+        int accounts = 16;
+        ConcurrentHashMap<Long, Integer> lastBalances = new ConcurrentHashMap<>();
+        AtomicInteger applied = new AtomicInteger();
+
+        // A small ring forces producers to wait on the writers
+        AccountPipeline pipeline = new AccountPipeline(4, 64, (accountId, tag, result) -> {
+            if (TransactionOutcome.isApplied(result)) {
+                applied.incrementAndGet();
+                lastBalances.put(accountId, TransactionOutcome.balance(result));
+            }
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    pipeline.deposit(i % accounts, 1, DATE, i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        pipeline.close();
+
+        assertEquals(producers * perProducer, applied.get());
+        for (long id = 0; id < accounts; id++) {
+            assertEquals(producers * perProducer / accounts, lastBalances.get(id));
+        }
+    }
+
+    @Test
+    void shouldJournalBatchesToWriteAheadLog() throws Exception {
+        Path path = directory.resolve("accounts.wal");
+        AtomicInteger reported = new AtomicInteger();
+
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            AccountPipeline pipeline = new AccountPipeline(2, 16, log, (accountId, tag, result) -> {
+                // Results are only reported once their batch is durable
+                assertTrue(log.getDurableSequence() > 0);
+                reported.incrementAndGet();
+            });
+            for (int i = 0; i < 100; i++) {
+                pipeline.deposit(i % 3, 10, DATE, i);
+            }
+            pipeline.withdraw(0L, 1_000_000, DATE, 100);
+            pipeline.close();
+
+            assertTrue(log.getSyncCount() <= 100);
+        }
+
+        TransactionLog history = WalAccountJournal.recover(path, 0L);
+        assertEquals(101, reported.get());
+        assertEquals(34, history.size());
+        assertEquals(340, history.balanceAt(33));
+    }
+
+    @Test
+    void shouldRejectMissingDateWithoutFailingTheShard() throws Exception {
+        List<Long> results = new ArrayList<>();
+        AccountPipeline pipeline = new AccountPipeline(1, 4, (accountId, tag, result) -> results.add(result));
+
+        assertThrows(NullPointerException.class, () -> pipeline.deposit(1L, 100, null, 0));
+        pipeline.deposit(1L, 100, DATE, 1);
+        pipeline.close();
+
+        assertEquals(1, results.size());
+        assertEquals(100, TransactionOutcome.balance(results.get(0)));
+    }
+
+    @Test
+    void shouldContinueBalancesOfRecoveredLedger() throws Exception {
+        Path path = directory.resolve("accounts.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            AccountPipeline pipeline = new AccountPipeline(2, 16, log, (accountId, tag, result) -> { });
+            pipeline.deposit(1L, 500, DATE, 0);
+            pipeline.deposit(2L, 200, DATE, 1);
+            pipeline.close();
+        }
+
+        List<Long> results = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            // Reopening without the recovered balances would append rows that do not follow them
+            assertThrows(IllegalArgumentException.class,
+                () -> new AccountPipeline(2, 16, log, (accountId, tag, result) -> { }));
+
+            ReplayEngine.Ledger recovered = new ReplayEngine().replay(path);
+            AccountPipeline pipeline = new AccountPipeline(2, 16, log, recovered, (accountId, tag, result) -> results.add(result));
+            pipeline.withdraw(1L, 100, DATE, 2);
+            pipeline.close();
+        }
+
+        assertEquals(400, TransactionOutcome.balance(results.get(0)));
+        ReplayEngine.Ledger replayed = new ReplayEngine().replay(path);
+        assertEquals(400, replayed.get(1L).getBalance());
+        assertEquals(200, replayed.get(2L).getBalance());
+    }
+
+    @Test
+    void shouldRejectCommandsAfterClose() throws Exception {
+        AccountPipeline pipeline = new AccountPipeline(1, 4, (accountId, tag, result) -> { });
+        pipeline.close();
+
+        assertThrows(IllegalStateException.class, () -> pipeline.deposit(1L, 100, DATE, 0));
+    }
+
+    @Test
+    void shouldKeepInterruptStatusWhenCloseIsInterrupted() {
+        AccountPipeline pipeline = new AccountPipeline(2, 4, (accountId, tag, result) -> { });
+        Thread.currentThread().interrupt();
+        try {
+            pipeline.close();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThrows(IllegalStateException.class, () -> pipeline.deposit(1L, 100, DATE, 0));
+    }
+
+    @Test
+    void shouldRejectRingCapacityThatIsNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountPipeline(1, 6, (accountId, tag, result) -> { }));
+    }
+}
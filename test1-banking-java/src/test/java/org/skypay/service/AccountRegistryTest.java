@@ -0,0 +1,116 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.exception.AccountNotFoundException;
+import org.skypay.model.ConcurrentAccount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountRegistryTest {
+
+    @Test
+    void shouldCreateAccountOnFirstAccess() {
+        AccountRegistry registry = new AccountRegistry();
+
+        ConcurrentAccount account = registry.getOrCreate(42L);
+
+        assertSame(account, registry.getOrCreate(42L));
+        assertSame(account, registry.get(42L));
+        assertTrue(registry.contains(42L));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void shouldThrowForUnknownAccount() {
+        AccountRegistry registry = new AccountRegistry();
+
+        AccountNotFoundException exception = assertThrows(
+            AccountNotFoundException.class,
+            () -> registry.get(7L)
+        );
+
+        assertTrue(exception.getMessage().contains("7"));
+        assertFalse(registry.contains(7L));
+    }
+
+    @Test
+    void shouldKeepAccountsSeparate() {
+        AccountRegistry registry = new AccountRegistry(4);
+        registry.getOrCreate(1L).deposite(100);
+        registry.getOrCreate(2L).deposite(250);
+
+        assertEquals(100, registry.get(1L).getBalance());
+        assertEquals(250, registry.get(2L).getBalance());
+    }
+
+    @Test
+    void shouldHoldManyAccountsAcrossStripes() {
+        AccountRegistry registry = new AccountRegistry(1);
+
+        for (long id = 0; id < 100_000; id++) {
+            registry.getOrCreate(id * 31);
+        }
+
+        assertEquals(100_000, registry.size());
+        for (long id = 0; id < 100_000; id++) {
+            assertTrue(registry.contains(id * 31));
+        }
+        assertFalse(registry.contains(1L));
+    }
+
+    @Test
+    void shouldVisitEveryAccount() {
+        AccountRegistry registry = new AccountRegistry();
+        for (long id = 1; id <= 100; id++) {
+            registry.getOrCreate(id);
+        }
+
+        AtomicLong idSum = new AtomicLong();
+        registry.forEach((id, account) -> idSum.addAndGet(id));
+
+        assertEquals(5050, idSum.get());
+    }
+
+    @Test
+    void shouldCreateEachAccountOnceUnderConcurrentAccess() throws InterruptedException {
+        AccountRegistry registry = new AccountRegistry();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (long id = 0; id < 10_000; id++) {
+                    registry.getOrCreate(id).deposite(1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(10_000, registry.size());
+        for (long id = 0; id < 10_000; id++) {
+            assertEquals(8, registry.get(id).getBalance());
+        }
+    }
+
+    @Test
+    void shouldTransferBetweenRegisteredAccounts() {
+        AccountRegistry registry = new AccountRegistry();
+        registry.getOrCreate(1L).deposite(500);
+        registry.getOrCreate(2L);
+
+        registry.transfer(1L, 2L, 200);
+
+        assertEquals(300, registry.get(1L).getBalance());
+        assertEquals(200, registry.get(2L).getBalance());
+        assertThrows(AccountNotFoundException.class, () -> registry.transfer(1L, 3L, 10));
+        assertEquals(300, registry.get(1L).getBalance());
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.skypay.exception.InsufficientBalanceException;
+import org.skypay.exception.InvalidAmountException;
+import org.skypay.model.Account;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedAccountServiceTest {
+
+    @Test
+    void shouldCountCallsAndRejectionsPerOperation() {
+        Account account = new Account();
+        InstrumentedAccountService service = new InstrumentedAccountService(account);
+
+        service.deposite(1000);
+        service.deposite(500);
+        assertThrows(InvalidAmountException.class, () -> service.deposite(0));
+        service.withdraw(200);
+        assertThrows(InsufficientBalanceException.class, () -> service.withdraw(5000));
+        assertThrows(InsufficientBalanceException.class, () -> service.withdraw(6000));
+        assertThrows(InvalidAmountException.class, () -> service.withdraw(-1));
+
+        InstrumentedAccountService.Snapshot snapshot = service.snapshot();
+        InstrumentedAccountService.OperationSnapshot deposits = snapshot.get(InstrumentedAccountService.Operation.DEPOSIT);
+        InstrumentedAccountService.OperationSnapshot withdrawals = snapshot.get(InstrumentedAccountService.Operation.WITHDRAW);
+
+        assertEquals(3, deposits.getCalls());
+        assertEquals(Map.of("InvalidAmountException", 1L), deposits.getRejections());
+        assertEquals(4, withdrawals.getCalls());
+        assertEquals(3, withdrawals.getRejectedCalls());
+        assertEquals(Map.of("InsufficientBalanceException", 2L, "InvalidAmountException", 1L), withdrawals.getRejections());
+        assertEquals(4, withdrawals.getLatency().getCount());
+        assertEquals(1300, account.getBalance());
+    }
+
+    @Test
+    void shouldTimeStatements() {
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            InstrumentedAccountService service = new InstrumentedAccountService(new Account());
+            service.deposite(100);
+            service.printStatement();
+
+            InstrumentedAccountService.OperationSnapshot statements =
+                service.snapshot().get(InstrumentedAccountService.Operation.PRINT_STATEMENT);
+            assertEquals(1, statements.getCalls());
+            assertTrue(statements.getLatency().getMax() > 0);
+            assertTrue(service.snapshot().toString().contains("print_statement calls=1"));
+        } finally {
+            System.setOut(originalOut);
+        }
+    }
+
+    @Test
+    void shouldKeepSnapshotUnchangedByLaterCalls() {
+        InstrumentedAccountService service = new InstrumentedAccountService(new Account());
+        service.deposite(100);
+
+        InstrumentedAccountService.Snapshot before = service.snapshot();
+        service.deposite(100);
+
+        assertEquals(1, before.get(InstrumentedAccountService.Operation.DEPOSIT).getCalls());
+        assertEquals(1, before.get(InstrumentedAccountService.Operation.DEPOSIT).getLatency().getCount());
+        assertEquals(2, service.snapshot().get(InstrumentedAccountService.Operation.DEPOSIT).getCalls());
+    }
+}
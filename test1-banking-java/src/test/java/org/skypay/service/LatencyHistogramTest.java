@@ -0,0 +1,91 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void shouldCountSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 50; value++) {
+            histogram.record(value);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(50, snapshot.getCount());
+        assertEquals(25, snapshot.valueAtPercentile(50));
+        assertEquals(50, snapshot.valueAtPercentile(100));
+        assertEquals(1, snapshot.valueAtPercentile(0));
+        assertEquals(25.5, snapshot.getMean(), 1e-9);
+    }
+
+    @Test
+    void shouldBoundRelativeErrorOfLargeValues() {
+        for (long value = 1; value < LatencyHistogram.MAX_TRACKABLE; value = value * 3 + 1) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long low = LatencyHistogram.lowestValueOf(bucket);
+            long high = LatencyHistogram.highestValueOf(bucket);
+
+            assertTrue(low <= value && value <= high, value + " outside [" + low + ", " + high + "]");
+            assertTrue(high - low <= Math.max(0, low / 32), "bucket of " + value + " is too wide");
+        }
+    }
+
+    @Test
+    void shouldReportPercentilesOfSkewedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(1_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5_000_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1_000, snapshot.valueAtPercentile(99), 1_000 / 32);
+        assertEquals(5_000_000, snapshot.valueAtPercentile(99.9), 5_000_000 / 32);
+        assertEquals(5_000_000, snapshot.getMax());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.valueAtPercentile(101));
+    }
+
+    @Test
+    void shouldClampValuesOutsideTrackableRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.valueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE, snapshot.getMax());
+    }
+
+    @Test
+    void shouldNotLoseConcurrentRecords() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, histogram.snapshot().getCount());
+        assertEquals(9_999, histogram.snapshot().getMax());
+    }
+}
@@ -0,0 +1,102 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.exception.AccountNotFoundException;
+import org.skypay.journal.WalAccountJournal;
+import org.skypay.journal.WriteAheadLog;
+import org.skypay.model.Account;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldRebuildEveryAccountFromSharedLog() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        int accounts = 500;
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            Account[] live = new Account[accounts];
+            for (int id = 0; id < accounts; id++) {
+                live[id] = new Account(new WalAccountJournal(log, id));
+            }
+            // Interleaved, as concurrent accounts write to one log
+            for (int round = 0; round < 20; round++) {
+                for (int id = 0; id < accounts; id++) {
+                    live[id].deposite(100 + id, LocalDate.of(2012, 1, 10).plusDays(round));
+                    if (round % 3 == 2) {
+                        live[id].withdraw(150, LocalDate.of(2012, 1, 10).plusDays(round));
+                    }
+                }
+            }
+        }
+
+        ReplayEngine.Ledger ledger;
+        try (ForkJoinPool pool = new ForkJoinPool(4)) {
+            ledger = new ReplayEngine(pool).replay(path);
+        }
+
+        assertEquals(accounts, ledger.size());
+        assertEquals(accounts * 26L, ledger.getTransactions());
+        for (int id = 0; id < accounts; id++) {
+            assertEquals(20 * (100 + id) - 6 * 150, ledger.get(id).getBalance());
+        }
+        assertEquals(20 * 100 - 6 * 150, ledger.get(0).balanceAt(LocalDate.of(2012, 2, 1)));
+    }
+
+    @Test
+    void shouldJournalNewTransactionsOfRebuiltAccounts() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            new Account(new WalAccountJournal(log, 7L)).deposite(1000, LocalDate.of(2012, 1, 10));
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            ReplayEngine.Ledger ledger = new ReplayEngine().replay(path, id -> new WalAccountJournal(log, id));
+            ledger.get(7L).withdraw(400, LocalDate.of(2012, 1, 11));
+        }
+
+        assertEquals(600, new ReplayEngine().replay(path).get(7L).getBalance());
+    }
+
+    @Test
+    void shouldRejectRecordWhoseBalanceDoesNotFollow() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.append(1L, 15_000, 1000, 1000);
+            log.append(2L, 15_000, 500, 500);
+            log.sync(log.append(1L, 15_001, -200, 900));
+        }
+
+        IOException failure = assertThrows(IOException.class, () -> new ReplayEngine().replay(path));
+        assertTrue(failure.getMessage().contains("Account 1, transaction 1"));
+    }
+
+    @Test
+    void shouldVisitEveryRebuiltAccount() throws IOException {
+        Path path = directory.resolve("ledger.wal");
+        try (WriteAheadLog log = WriteAheadLog.open(path)) {
+            log.append(-5L, 15_000, 10, 10);
+            log.append(Long.MAX_VALUE, 15_000, 20, 20);
+            log.sync(log.append(3L, 15_000, 30, 30));
+        }
+
+        ReplayEngine.Ledger ledger = new ReplayEngine().replay(path);
+        AtomicLong total = new AtomicLong();
+        ledger.forEach((id, account) -> total.addAndGet(account.getBalance()));
+
+        assertEquals(60, total.get());
+        assertTrue(ledger.contains(Long.MAX_VALUE));
+        assertFalse(ledger.contains(4L));
+        assertThrows(AccountNotFoundException.class, () -> ledger.get(4L));
+    }
+}
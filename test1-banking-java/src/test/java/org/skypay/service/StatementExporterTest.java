@@ -0,0 +1,102 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skypay.model.Account;
+import org.skypay.model.TransactionLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementExporterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldExportCsvOldestFirst() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = new StatementExporter().export(acceptanceLog(), StatementExporter.Format.CSV, out);
+
+        assertEquals(
+            "date,amount,balance\n"
+                + "2012-01-10,1000,1000\n"
+                + "2012-01-13,2000,3000\n"
+                + "2012-01-14,-500,2500\n",
+            out.toString(StandardCharsets.US_ASCII)
+        );
+        assertEquals(out.size(), written);
+    }
+
+    @Test
+    void shouldExportNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new StatementExporter().export(acceptanceLog(), StatementExporter.Format.NDJSON, Channels.newChannel(out));
+
+        assertEquals(
+            "{\"date\":\"2012-01-10\",\"amount\":1000,\"balance\":1000}\n"
+                + "{\"date\":\"2012-01-13\",\"amount\":2000,\"balance\":3000}\n"
+                + "{\"date\":\"2012-01-14\",\"amount\":-500,\"balance\":2500}\n",
+            out.toString(StandardCharsets.US_ASCII)
+        );
+    }
+
+    @Test
+    void shouldMatchIsoDatesAndIntegerTextAcrossBufferBoundaries() throws IOException {
+        TransactionLog log = new TransactionLog();
+        int[] days = {
+            (int) LocalDate.of(1, 1, 1).toEpochDay(),
+            (int) LocalDate.of(9999, 12, 31).toEpochDay(),
+            (int) LocalDate.of(10000, 1, 1).toEpochDay(),
+            (int) LocalDate.of(-5, 6, 7).toEpochDay()
+        };
+        for (int i = 0; i < 5_000; i++) {
+            log.append(days[i % days.length] + i / days.length, i % 2 == 0 ? Integer.MIN_VALUE : i, Integer.MAX_VALUE - i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Smallest allowed buffer, so rows are flushed every few lines
+        new StatementExporter(96).export(log, StatementExporter.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(log.size() + 1, lines.length);
+        for (int i = 0; i < log.size(); i++) {
+            assertEquals(log.dateAt(i) + "," + log.amountAt(i) + "," + log.balanceAt(i), lines[i + 1], "row " + i);
+        }
+    }
+
+    @Test
+    void shouldExportAccountHistoryToFile() throws IOException {
+        Account account = new Account();
+        account.deposite(1000, LocalDate.of(2012, 1, 10));
+        account.withdraw(250, LocalDate.of(2012, 1, 11));
+        Path file = directory.resolve("statement.csv");
+
+        account.exportStatement(StatementExporter.Format.CSV, file);
+
+        assertEquals(List.of("date,amount,balance", "2012-01-10,1000,1000", "2012-01-11,-250,750"), Files.readAllLines(file));
+    }
+
+    @Test
+    void shouldRejectBufferTooSmallForOneRow() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementExporter(16));
+    }
+
+    private static TransactionLog acceptanceLog() {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(2012, 1, 10), 1000, 1000);
+        log.append(LocalDate.of(2012, 1, 13), 2000, 3000);
+        log.append(LocalDate.of(2012, 1, 14), -500, 2500);
+        return log;
+    }
+}
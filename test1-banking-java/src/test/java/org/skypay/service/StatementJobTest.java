@@ -0,0 +1,79 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementJobTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldWriteOneStatementFilePerAccount() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        for (long id = 0; id < 200; id++) {
+            for (int i = 1; i <= id % 5 + 1; i++) {
+                registry.getOrCreate(id).deposite(100 * i, LocalDate.of(2012, 1, i));
+            }
+        }
+
+        StatementJob job = new StatementJob(directory.resolve("eod"), 8);
+        StatementJob.Report report = job.run(registry);
+
+        assertEquals(200, report.getAccounts());
+        assertEquals(600, report.getTransactions());
+        long totalBytes = 0;
+        for (long id = 0; id < 200; id++) {
+            Path statement = job.statementPath(id);
+            List<String> lines = Files.readAllLines(statement);
+            assertEquals("Date        || Amount || Balance", lines.get(0));
+            assertEquals(id % 5 + 2, lines.size());
+            totalBytes += Files.size(statement);
+        }
+        assertEquals(totalBytes, report.getBytes());
+    }
+
+    @Test
+    void shouldMatchSequentialStatementOutput() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        registry.getOrCreate(7L).deposite(1000, LocalDate.of(2012, 1, 10));
+        registry.getOrCreate(7L).deposite(2000, LocalDate.of(2012, 1, 13));
+        registry.getOrCreate(7L).withdraw(500, LocalDate.of(2012, 1, 14));
+
+        StatementJob job = new StatementJob(directory, 1);
+        job.run(registry);
+
+        StringBuilder expected = new StringBuilder();
+        new StreamingStatementPrinter().print(registry.get(7L).getTransactions(), expected);
+        assertEquals(expected.toString(), Files.readString(job.statementPath(7L)));
+    }
+
+    @Test
+    void shouldReportFailedStatementsAfterRunningTheRest() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        registry.getOrCreate(1L).deposite(100);
+        registry.getOrCreate(2L).deposite(200);
+
+        StatementJob job = new StatementJob(directory, 2);
+        // A directory where the statement file should go makes that one account fail
+        Files.createDirectories(job.statementPath(1L));
+
+        IOException failure = assertThrows(IOException.class, () -> job.run(registry));
+
+        assertTrue(failure.getMessage().contains("account 1"));
+        assertTrue(Files.isRegularFile(job.statementPath(2L)));
+    }
+
+    @Test
+    void shouldRejectNonPositiveParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementJob(directory, 0));
+    }
+}
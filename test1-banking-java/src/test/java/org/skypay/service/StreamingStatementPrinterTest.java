@@ -0,0 +1,119 @@
+package org.skypay.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.skypay.model.Transaction;
+import org.skypay.model.TransactionLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingStatementPrinterTest {
+
+    private final PrintStream originalOut = System.out;
+
+    @Test
+    void shouldMatchFormattedOutputForAcceptanceScenario() throws IOException {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(2012, 1, 10), 1000, 1000);
+        log.append(LocalDate.of(2012, 1, 13), 2000, 3000);
+        log.append(LocalDate.of(2012, 1, 14), -500, 2500);
+
+        StringBuilder out = new StringBuilder();
+        new StreamingStatementPrinter().print(log, out);
+
+        String separator = System.lineSeparator();
+        assertEquals(
+            "Date        || Amount || Balance" + separator
+                + "14/01/2012  || -500   || 2500" + separator
+                + "13/01/2012  || 2000   || 3000" + separator
+                + "10/01/2012  || 1000   || 1000" + separator,
+            out.toString()
+        );
+    }
+
+    @Test
+    void shouldBeByteIdenticalToStatementPrinterForEdgeValues() throws IOException {
+        TransactionLog log = new TransactionLog();
+        log.append(LocalDate.of(1, 1, 1), Integer.MIN_VALUE, Integer.MAX_VALUE);
+        log.append(LocalDate.of(0, 6, 15), 7, -7);
+        log.append(LocalDate.of(9999, 12, 31), 1234567, 0);
+        log.append(LocalDate.of(10000, 1, 1), -1, 12345678);
+        log.append(LocalDate.of(-42, 2, 28), 0, 5);
+
+        assertEquals(printWithFormatter(log), printStreaming(log, 64));
+    }
+
+    @Test
+    void shouldBeByteIdenticalToStatementPrinterForRandomHistory() throws IOException {
+        Random random = new Random(42);
+        TransactionLog log = new TransactionLog();
+        int epochDay = (int) LocalDate.of(1990, 1, 1).toEpochDay();
+        int balance = 0;
+
+        for (int i = 0; i < 5_000; i++) {
+            epochDay += random.nextInt(3);
+            int amount = random.nextBoolean() ? random.nextInt(1_000_000) + 1 : -random.nextInt(1000) - 1;
+            balance += amount;
+            log.append(epochDay, amount, balance);
+        }
+
+        assertEquals(printWithFormatter(log), printStreaming(log, 100));
+    }
+
+    @Test
+    void shouldWriteSameBytesToChannelAndAppendable() throws IOException {
+        TransactionLog log = new TransactionLog();
+        for (int i = 0; i < 1_000; i++) {
+            log.append(15_000 + i, i + 1, (i + 1) * 10);
+        }
+
+        StreamingStatementPrinter printer = new StreamingStatementPrinter(128);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        printer.print(log, Channels.newChannel(bytes));
+        StringBuilder chars = new StringBuilder();
+        printer.print(log, chars);
+
+        assertEquals(chars.toString(), bytes.toString());
+    }
+
+    @Test
+    void shouldRejectBufferTooSmallForOneLine() {
+        assertThrows(IllegalArgumentException.class, () -> new StreamingStatementPrinter(16));
+    }
+
+    private String printStreaming(TransactionLog log, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingStatementPrinter(bufferSize).print(log, out);
+        return out.toString();
+    }
+
+    private String printWithFormatter(TransactionLog log) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < log.size(); i++) {
+            transactions.add(log.get(i));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            new StatementPrinter().print(transactions);
+        } finally {
+            System.setOut(originalOut);
+        }
+        return out.toString();
+    }
+
+    @AfterEach
+    void restoreSystemOut() {
+        System.setOut(originalOut);
+    }
+}
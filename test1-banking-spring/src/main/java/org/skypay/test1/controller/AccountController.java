@@ -25,7 +25,15 @@ public class AccountController {
     
     @PostMapping("/deposit")
     public ResponseEntity<AccountResponse> deposit(@Valid @RequestBody TransactionRequest request) {
-        if (request.getDate() != null && !request.getDate().isBlank()) {
+        boolean dated = request.getDate() != null && !request.getDate().isBlank();
+        if (request.hasIdempotencyKey()) {
+            // An undated retry is bound to the operation and amount only, so it still matches after midnight
+            int balance = dated
+                ? account.deposite(request.getAmount(), request.getLocalDate(), request.getIdempotencyKey())
+                : account.deposite(request.getAmount(), request.getIdempotencyKey());
+            return ResponseEntity.ok(new AccountResponse(balance, "Deposit successful"));
+        }
+        if (dated) {
             account.deposite(request.getAmount(), request.getLocalDate());
         } else {
             account.deposite(request.getAmount());
@@ -37,7 +45,15 @@ public class AccountController {
     
     @PostMapping("/withdraw")
     public ResponseEntity<AccountResponse> withdraw(@Valid @RequestBody TransactionRequest request) {
-        if (request.getDate() != null && !request.getDate().isBlank()) {
+        boolean dated = request.getDate() != null && !request.getDate().isBlank();
+        if (request.hasIdempotencyKey()) {
+            // An undated retry is bound to the operation and amount only, so it still matches after midnight
+            int balance = dated
+                ? account.withdraw(request.getAmount(), request.getLocalDate(), request.getIdempotencyKey())
+                : account.withdraw(request.getAmount(), request.getIdempotencyKey());
+            return ResponseEntity.ok(new AccountResponse(balance, "Withdrawal successful"));
+        }
+        if (dated) {
             account.withdraw(request.getAmount(), request.getLocalDate());
         } else {
             account.withdraw(request.getAmount());
@@ -1,6 +1,7 @@
 package org.skypay.test1.dto;
 
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +18,18 @@ public class TransactionRequest {
     
     private String date;
     
+    // Optional: a retry carrying the same key returns the original result instead of being applied again
+    @Size(max = 255, message = "Idempotency key must be at most 255 characters")
+    private String idempotencyKey;
+    
+    public TransactionRequest(int amount, String date) {
+        this(amount, date, null);
+    }
+    
+    public boolean hasIdempotencyKey() {
+        return idempotencyKey != null && !idempotencyKey.isBlank();
+    }
+    
     public LocalDate getLocalDate() {
         if (date == null || date.isBlank()) {
             return LocalDate.now();
@@ -7,82 +7,156 @@ import org.skypay.test1.service.StatementPrinter;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Singleton bean shared by every request thread. Balance and transaction count share one 64-bit word,
+// so a single compare-and-set both checks the balance and reserves the next log slot.
 @Component
 public class Account implements AccountService {
-    
-    private int balance;
-    private final List<Transaction> transactions;
+
+    // Operation codes stored with each idempotency key, so a key cannot be replayed for the other operation.
+    // Undated requests have their own codes and are bound without a day, so a retry after midnight still matches.
+    private static final int KEYED_DEPOSIT = 1;
+    private static final int KEYED_WITHDRAWAL = 2;
+    private static final int KEYED_DEPOSIT_TODAY = 3;
+    private static final int KEYED_WITHDRAWAL_TODAY = 4;
+
+    // High 32 bits: number of reserved log slots, low 32 bits: balance
+    private final AtomicLong state;
+    private final ConcurrentTransactionLog transactions;
     private final StatementPrinter statementPrinter;
-    
+    // Balance after each recent keyed request, so client retries are answered without applying them again
+    private final IdempotencyCache idempotencyCache;
+
     public Account() {
-        this.balance = 0;
-        this.transactions = new ArrayList<>();
+        this.state = new AtomicLong(0);
+        this.transactions = new ConcurrentTransactionLog();
         this.statementPrinter = new StatementPrinter();
+        this.idempotencyCache = new IdempotencyCache();
     }
-    
+
     @Override
     public void deposite(int amount) {
-        if (amount <= 0) {
-            throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
-        }
-        
-        balance += amount;
-        transactions.add(new Transaction(LocalDate.now(), amount, balance));
+        deposite(amount, LocalDate.now());
     }
-    
+
     public void deposite(int amount, LocalDate date) {
+        depositOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+
+    // Keyed variants return the balance right after the operation. A key seen before returns the balance
+    // recorded the first time without applying anything; a rejected request is not remembered, so its retry
+    // is checked again like a new request. A key reused for a different operation, amount or date throws
+    // IdempotencyKeyConflictException. Without a date the operation is dated when it is first applied, and
+    // the key is bound to the operation and amount only.
+    public int deposite(int amount, String idempotencyKey) {
+        return (int) idempotencyCache.getOrCompute(idempotencyKey, KEYED_DEPOSIT_TODAY, amount, 0,
+            () -> depositOn(amount, Math.toIntExact(LocalDate.now().toEpochDay())));
+    }
+
+    public int withdraw(int amount, String idempotencyKey) {
+        return (int) idempotencyCache.getOrCompute(idempotencyKey, KEYED_WITHDRAWAL_TODAY, amount, 0,
+            () -> withdrawOn(amount, Math.toIntExact(LocalDate.now().toEpochDay())));
+    }
+
+    public int deposite(int amount, LocalDate date, String idempotencyKey) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        return (int) idempotencyCache.getOrCompute(idempotencyKey, KEYED_DEPOSIT, amount, epochDay,
+            () -> depositOn(amount, epochDay));
+    }
+
+    public int withdraw(int amount, LocalDate date, String idempotencyKey) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        return (int) idempotencyCache.getOrCompute(idempotencyKey, KEYED_WITHDRAWAL, amount, epochDay,
+            () -> withdrawOn(amount, epochDay));
+    }
+
+    private int depositOn(int amount, int epochDay) {
         if (amount <= 0) {
             throw new InvalidAmountException("Deposit amount must be positive, received: " + amount);
         }
-        
-        balance += amount;
-        transactions.add(new Transaction(date, amount, balance));
+
+        while (true) {
+            long current = state.get();
+            int index = countOf(current);
+            int newBalance = balanceOf(current) + amount;
+
+            int count = reserveSlot(index);
+            transactions.ensureCapacity(index);
+            if (state.compareAndSet(current, pack(count, newBalance))) {
+                transactions.write(index, epochDay, amount, newBalance);
+                return newBalance;
+            }
+        }
     }
-    
+
     @Override
     public void withdraw(int amount) {
-        if (amount <= 0) {
-            throw new InvalidAmountException("Withdrawal amount must be positive, received: " + amount);
-        }
-        
-        if (balance < amount) {
-            throw new InsufficientBalanceException(
-                "Insufficient balance. Available: " + balance + ", requested: " + amount
-            );
-        }
-        
-        balance -= amount;
-        transactions.add(new Transaction(LocalDate.now(), -amount, balance));
+        withdraw(amount, LocalDate.now());
     }
-    
+
     public void withdraw(int amount, LocalDate date) {
+        withdrawOn(amount, Math.toIntExact(date.toEpochDay()));
+    }
+
+    private int withdrawOn(int amount, int epochDay) {
         if (amount <= 0) {
             throw new InvalidAmountException("Withdrawal amount must be positive, received: " + amount);
         }
-        
-        if (balance < amount) {
-            throw new InsufficientBalanceException(
-                "Insufficient balance. Available: " + balance + ", requested: " + amount
-            );
+
+        while (true) {
+            long current = state.get();
+            int index = countOf(current);
+            int balance = balanceOf(current);
+
+            // Checked against the same snapshot the CAS commits, so the check and the debit are atomic
+            if (balance < amount) {
+                throw new InsufficientBalanceException(
+                    "Insufficient balance. Available: " + balance + ", requested: " + amount
+                );
+            }
+
+            int newBalance = balance - amount;
+            int count = reserveSlot(index);
+            transactions.ensureCapacity(index);
+            if (state.compareAndSet(current, pack(count, newBalance))) {
+                transactions.write(index, epochDay, -amount, newBalance);
+                return newBalance;
+            }
         }
-        
-        balance -= amount;
-        transactions.add(new Transaction(date, -amount, balance));
     }
-    
+
     @Override
     public void printStatement() {
-        statementPrinter.print(transactions);
+        statementPrinter.print(getTransactions());
     }
-    
+
     public int getBalance() {
-        return balance;
+        return balanceOf(state.get());
     }
-    
+
     public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions);
+        return transactions.snapshot(countOf(state.get()));
+    }
+
+    // Count after reserving the slot at index, refused once the log cannot grow any further
+    private static int reserveSlot(int index) {
+        if (index >= ConcurrentTransactionLog.MAX_SIZE) {
+            throw new IllegalStateException("Transaction log is full");
+        }
+        return index + 1;
+    }
+
+    private static long pack(int count, int balance) {
+        return ((long) count << 32) | (balance & 0xFFFFFFFFL);
+    }
+
+    private static int countOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int balanceOf(long state) {
+        return (int) state;
     }
 }
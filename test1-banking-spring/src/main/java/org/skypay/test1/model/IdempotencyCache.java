@@ -0,0 +1,315 @@
+package org.skypay.test1.model;
+
+import org.skypay.test1.exception.IdempotencyKeyConflictException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Remembers the result of recent keyed requests so a client retry gets the original result back instead
+// of applying the operation twice. Keys are kept in full and compared with equals(); their hash only picks
+// the stripe and slot. Each entry also keeps the request it answered (operation, amount, day), so a key
+// reused for a different request is refused instead of being answered with an unrelated result. Results
+// are primitive longs in flat arrays, split into independently locked, linearly probed stripes. A stripe is
+// created on first use with a few slots and doubles as it fills, up to twice its share of the capacity so
+// uneven hashing never forces an eviction early. Nothing is evicted until the whole cache holds capacity
+// entries; then an expired entry is reclaimed if there is one, else the one closest to expiry.
+public class IdempotencyCache {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(24);
+    private static final int STRIPES = 16;
+    private static final int PROBES = 8;
+
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+    // Entries held by all stripes, expired ones included until a stripe reclaims them
+    private final AtomicInteger occupied = new AtomicInteger();
+    private final int capacity;
+    private final int maxSlotsPerStripe;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    public IdempotencyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public IdempotencyCache(int capacity, Duration timeToLive) {
+        this(capacity, timeToLive, Clock.systemUTC());
+    }
+
+    public IdempotencyCache(int capacity, Duration timeToLive, Clock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, received: " + capacity);
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive, received: " + timeToLive);
+        }
+
+        int perStripe = Math.max(PROBES, (capacity + STRIPES - 1) / STRIPES);
+        this.capacity = capacity;
+        // Twice the share at the three-quarters load a stripe is kept to
+        this.maxSlotsPerStripe = Integer.highestOneBit((8 * perStripe + 2) / 3 - 1) << 1;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+    }
+
+    // Returns the result remembered for key if it has not expired, otherwise runs action and remembers what
+    // it returns. Callers with the same key are serialized, so the action runs at most once per key while it
+    // is remembered. If action throws, nothing is remembered and a retry runs it again. Reusing a remembered
+    // key with another operation, amount or day throws IdempotencyKeyConflictException.
+    public long getOrCompute(String key, int operation, int amount, int epochDay, LongSupplier action) {
+        int hash = (int) mix(key.hashCode());
+        long request = ((long) amount << 32) | (epochDay & 0xFFFFFFFFL);
+        return stripeFor(hash).getOrCompute(key, hash, operation, request, action, clock.millis());
+    }
+
+    // Number of unexpired entries, for monitoring and tests
+    public int size() {
+        long now = clock.millis();
+        int size = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) {
+                size += stripe.size(now);
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(int hash) {
+        int index = hash >>> 28;
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    // Takes one unit of capacity for a new entry, or returns false when the cache is full
+    private boolean reserve() {
+        int current;
+        do {
+            current = occupied.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!occupied.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // Murmur3 finalizer: similar String hashes spread over stripes and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private final class Stripe {
+
+        // Interleaved (expiresAt, result, request, operation) entries, with the key itself in keys[slot].
+        // expiresAt == 0 marks a slot that was never used.
+        private static final int WIDTH = 4;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private String[] keys = new String[PROBES];
+        private long[] entries = new long[PROBES * WIDTH];
+        private int mask = PROBES - 1;
+        // Slots holding an entry, live or expired. Kept to at most three quarters of the slots, so a probe
+        // always ends at a never-used slot.
+        private int used;
+        // No entry expires earlier, so reclaiming is skipped until it could free something
+        private long earliestExpiry = Long.MAX_VALUE;
+
+        long getOrCompute(String key, int hash, int operation, long request, LongSupplier action, long now) {
+            lock.lock();
+            try {
+                for (int probe = 0; probe <= mask; probe++) {
+                    int slot = (hash + probe) & mask;
+                    long expiresAt = entries[slot * WIDTH];
+
+                    // Entries only leave in a rehash, so the key cannot sit past a never-used slot
+                    if (expiresAt == 0) {
+                        break;
+                    }
+                    if (expiresAt > now && key.equals(keys[slot])) {
+                        if (entries[slot * WIDTH + 2] != request || entries[slot * WIDTH + 3] != operation) {
+                            throw new IdempotencyKeyConflictException(
+                                "Idempotency key was already used for a different request: " + key);
+                        }
+                        return entries[slot * WIDTH + 1];
+                    }
+                }
+
+                long result = action.getAsLong();
+
+                int slot = slotFor(hash, now);
+                long expiresAt = Math.max(1, now + timeToLiveMillis);
+                keys[slot] = key;
+                entries[slot * WIDTH] = expiresAt;
+                entries[slot * WIDTH + 1] = result;
+                entries[slot * WIDTH + 2] = request;
+                entries[slot * WIDTH + 3] = operation;
+                earliestExpiry = Math.min(earliestExpiry, expiresAt);
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size(long now) {
+            lock.lock();
+            try {
+                int size = 0;
+                for (int base = 0; base < entries.length; base += WIDTH) {
+                    if (entries[base] > now) {
+                        size++;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // An expired slot on the key's probe path if there is one, otherwise a never-used slot while the
+        // cache is below capacity, growing the stripe first if it is getting full. At capacity, after
+        // reclaiming expired entries, the live entry closest to expiry is replaced.
+        private int slotFor(int hash, long now) {
+            int expired = firstOnPath(hash, now);
+            if (expired >= 0) {
+                return expired;
+            }
+
+            if (!reserve() && !(reclaim(now) && reserve()) && !(reclaimOthers(now) && reserve())) {
+                return evict(hash, now);
+            }
+            if (4 * (used + 1) > 3 * (mask + 1)) {
+                if (mask + 1 < maxSlotsPerStripe) {
+                    rehash((mask + 1) * 2, now);
+                } else if (!reclaim(now)) {
+                    // Twice its share and still full: this stripe evicts even though others have room
+                    occupied.decrementAndGet();
+                    return evict(hash, now);
+                }
+            }
+
+            used++;
+            return firstOnPath(hash, Long.MIN_VALUE);
+        }
+
+        // First slot on hash's probe path that is expired at now, or never used; -1 if there is none.
+        // With now == Long.MIN_VALUE nothing counts as expired, so this finds the never-used slot.
+        private int firstOnPath(int hash, long now) {
+            for (int probe = 0; probe <= mask; probe++) {
+                int slot = (hash + probe) & mask;
+                long expiresAt = entries[slot * WIDTH];
+                if (expiresAt == 0) {
+                    return now == Long.MIN_VALUE ? slot : -1;
+                }
+                if (expiresAt <= now) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // Replaces the entry closest to expiry among the first ones on hash's probe path. When the path starts
+        // at a never-used slot, the stripe's entry closest to expiry is dropped instead and the new one takes
+        // the never-used slot, so every entry stays reachable from the start of its path.
+        private int evict(int hash, long now) {
+            int victim = -1;
+            long victimExpiry = Long.MAX_VALUE;
+            for (int probe = 0; probe < PROBES && probe <= mask; probe++) {
+                int slot = (hash + probe) & mask;
+                long expiresAt = entries[slot * WIDTH];
+                if (expiresAt == 0) {
+                    break;
+                }
+                if (expiresAt < victimExpiry) {
+                    victim = slot;
+                    victimExpiry = expiresAt;
+                }
+            }
+            if (victim >= 0) {
+                return victim;
+            }
+
+            for (int slot = 0; slot <= mask; slot++) {
+                long expiresAt = entries[slot * WIDTH];
+                if (expiresAt != 0 && expiresAt < victimExpiry) {
+                    victim = slot;
+                    victimExpiry = expiresAt;
+                }
+            }
+            if (victim >= 0) {
+                // Marked expired, so the rehash drops it with any other expired entry
+                entries[victim * WIDTH] = 1;
+                rehash(mask + 1, now);
+            }
+            // Without a victim the stripe is empty and holds one entry over the cache's capacity
+            occupied.incrementAndGet();
+            used++;
+            return firstOnPath(hash, Long.MIN_VALUE);
+        }
+
+        // Drops this stripe's expired entries, returning whether any were dropped
+        private boolean reclaim(long now) {
+            if (now < earliestExpiry) {
+                return false;
+            }
+            int before = used;
+            rehash(mask + 1, now);
+            return used < before;
+        }
+
+        // Drops expired entries from the other stripes that are not busy. Only tryLock is used, so two full
+        // stripes reclaiming from each other cannot deadlock.
+        private boolean reclaimOthers(long now) {
+            boolean reclaimed = false;
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe other = stripes.get(i);
+                if (other != null && other != this && other.lock.tryLock()) {
+                    try {
+                        reclaimed |= other.reclaim(now);
+                    } finally {
+                        other.lock.unlock();
+                    }
+                }
+            }
+            return reclaimed;
+        }
+
+        // Re-places the unexpired entries in a table of the given size, each in the first never-used slot of
+        // its probe path, so no live entry is ever overwritten
+        private void rehash(int slots, long now) {
+            String[] oldKeys = keys;
+            long[] old = entries;
+            keys = new String[slots];
+            entries = new long[slots * WIDTH];
+            mask = slots - 1;
+            int survivors = 0;
+            earliestExpiry = Long.MAX_VALUE;
+
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                long expiresAt = old[slot * WIDTH];
+                if (expiresAt > now) {
+                    int target = firstOnPath((int) mix(oldKeys[slot].hashCode()), Long.MIN_VALUE);
+                    keys[target] = oldKeys[slot];
+                    System.arraycopy(old, slot * WIDTH, entries, target * WIDTH, WIDTH);
+                    earliestExpiry = Math.min(earliestExpiry, expiresAt);
+                    survivors++;
+                }
+            }
+
+            occupied.addAndGet(survivors - used);
+            used = survivors;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.skypay.test1.model;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.skypay.test1.exception.IdempotencyKeyConflictException;
 import org.skypay.test1.exception.InsufficientBalanceException;
 import org.skypay.test1.exception.InvalidAmountException;
 
@@ -52,6 +53,112 @@ class AccountTest {
         assertThrows(InsufficientBalanceException.class, () -> account.withdraw(200, LocalDate.now()));
     }
     
+    @Test
+    void shouldKeepBalanceConsistentUnderConcurrentRequests() throws InterruptedException {
+        account.deposite(1000, LocalDate.now());
+        Thread[] threads = new Thread[8];
+        
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    account.deposite(1, LocalDate.now());
+                    try {
+                        account.withdraw(2, LocalDate.now());
+                    } catch (InsufficientBalanceException e) {
+                        // Expected once the balance is exhausted
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        int balance = 0;
+        for (Transaction transaction : account.getTransactions()) {
+            balance += transaction.getAmount();
+            assertEquals(balance, transaction.getBalance());
+            assertTrue(balance >= 0);
+        }
+        assertEquals(balance, account.getBalance());
+    }
+    
+    @Test
+    void shouldReturnOriginalBalanceForRetriedDeposit() {
+        int first = account.deposite(1000, LocalDate.of(2012, 1, 10), "req-1");
+        account.deposite(500, LocalDate.of(2012, 1, 11));
+        int retry = account.deposite(1000, LocalDate.of(2012, 1, 10), "req-1");
+        
+        assertEquals(1000, first);
+        assertEquals(1000, retry);
+        assertEquals(1500, account.getBalance());
+        assertEquals(2, account.getTransactions().size());
+    }
+    
+    @Test
+    void shouldRetryRejectedWithdrawalAsNewRequest() {
+        account.deposite(100, LocalDate.of(2012, 1, 10));
+        
+        assertThrows(InsufficientBalanceException.class,
+            () -> account.withdraw(300, LocalDate.of(2012, 1, 11), "req-2"));
+        account.deposite(500, LocalDate.of(2012, 1, 12));
+        
+        assertEquals(300, account.withdraw(300, LocalDate.of(2012, 1, 11), "req-2"));
+        assertEquals(300, account.withdraw(300, LocalDate.of(2012, 1, 11), "req-2"));
+        assertEquals(300, account.getBalance());
+    }
+    
+    @Test
+    void shouldRefuseKeyReusedForDifferentRequest() {
+        account.deposite(1000, LocalDate.of(2012, 1, 10), "req-3");
+        
+        assertThrows(IdempotencyKeyConflictException.class,
+            () -> account.withdraw(1000, LocalDate.of(2012, 1, 10), "req-3"));
+        assertThrows(IdempotencyKeyConflictException.class,
+            () -> account.deposite(500, LocalDate.of(2012, 1, 10), "req-3"));
+        assertEquals(1000, account.getBalance());
+    }
+    
+    @Test
+    void shouldReplayUndatedKeyedRequestOnce() {
+        int first = account.deposite(1000, "req-4");
+        int retry = account.deposite(1000, "req-4");
+        
+        assertEquals(1000, first);
+        assertEquals(1000, retry);
+        assertEquals(1, account.getTransactions().size());
+        assertThrows(IdempotencyKeyConflictException.class, () -> account.withdraw(1000, "req-4"));
+    }
+    
+    @Test
+    void shouldTellApartKeysWithTheSameHash() {
+        // "Aa" and "BB" have the same String.hashCode()
+        account.deposite(100, LocalDate.of(2012, 1, 10), "Aa");
+        account.deposite(100, LocalDate.of(2012, 1, 10), "BB");
+        
+        assertEquals(200, account.getBalance());
+    }
+    
+    @Test
+    void shouldApplyConcurrentRetriesOfOneKeyOnce() throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    account.deposite(1, LocalDate.of(2012, 1, 10), "req-" + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1000, account.getBalance());
+    }
+    
     @Test
     void acceptanceTest() {
         // Given: deposit 1000 on 10-01-2012, deposit 2000 on 13-01-2012, withdraw 500 on 14-01-2012